@@ -0,0 +1,38 @@
+package t.me.p1azmer.discord.verify;
+
+import org.jetbrains.annotations.NotNull;
+import org.yaml.snakeyaml.Yaml;
+import t.me.p1azmer.discord.verify.config.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Loads the bundled {@code config.yml} and canned API payloads so benchmarks never touch the disk layout or network.
+ */
+public final class BenchmarkConfig {
+
+    private BenchmarkConfig() {
+    }
+
+    public static void loadBundledConfig() {
+        try (InputStream input = Objects.requireNonNull(Main.class.getResourceAsStream("/config.yml"), "bundled config.yml")) {
+            Map<String, Object> configMap = new Yaml().load(input);
+            Config.load(configMap);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    public static @NotNull String payload(@NotNull String name) {
+        try (InputStream input = Objects.requireNonNull(BenchmarkConfig.class.getResourceAsStream("/payloads/" + name), name)) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package t.me.p1azmer.discord.verify;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import t.me.p1azmer.discord.verify.commands.VerificationCommands;
+import t.me.p1azmer.discord.verify.config.Config;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MainBenchmark {
+    // what SlashCommandContext passes for a client set to English (US)
+    private static final String LOCALE = "en-US";
+
+    @Setup
+    public void setup() {
+        BenchmarkConfig.loadBundledConfig();
+    }
+
+    @Benchmark
+    public String generateCode() {
+        return VerificationCommands.generateCode(Config.getSnapshot(), code -> false);
+    }
+
+    @Benchmark
+    public String renderMessageNoPlaceholders() {
+        return Config.getSnapshot().message("messages.verify.success", LOCALE).render();
+    }
+
+    @Benchmark
+    public String renderMessageOnePlaceholder() {
+        return Config.getSnapshot().message("messages.verify.instruction", LOCALE).render("{code}", "discord.gg/123456/ajnPb3fdKq");
+    }
+
+    @Benchmark
+    public String renderMessageTwoPlaceholders() {
+        return Config.getSnapshot().message("messages.verify.failure", LOCALE).render(
+                "{actual_info}", "discord.gg/654321/ajnPb3fdKq", "{code}", "discord.gg/123456/ajnPb3fdKq");
+    }
+}
@@ -0,0 +1,49 @@
+package t.me.p1azmer.discord.verify.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import t.me.p1azmer.discord.verify.BenchmarkConfig;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConfigBenchmark {
+
+    @Setup
+    public void setup() {
+        BenchmarkConfig.loadBundledConfig();
+    }
+
+    @Benchmark
+    public String getConfigStringShallow() {
+        return Config.getConfigString("guild.id");
+    }
+
+    @Benchmark
+    public String getConfigStringDeep() {
+        return Config.getConfigString("messages.verify.discord.identifier.user-not-found");
+    }
+
+    @Benchmark
+    public String getConfigStringMissing() {
+        return Config.getConfigString("messages.verify.does-not-exist");
+    }
+
+    @Benchmark
+    public List<String> getConfigStringList() {
+        return Config.getConfigStringList("assign.roles");
+    }
+
+    @Benchmark
+    public long snapshotField() {
+        return Config.getSnapshot().guild(1234L).channelId();
+    }
+}
@@ -0,0 +1,34 @@
+package t.me.p1azmer.discord.verify.models;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What {@code /verify} and {@code /done} do with the username and code, compared with the former
+ * {@code "nickname#code"} encoding that was split and regex-stripped on every {@code /done}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PendingVerificationBenchmark {
+    private final String nickname = "Some User";
+    private final String code = "discord.gg/123456/ajnPb3fdKq";
+    private final String encoded = nickname + "#" + code;
+
+    @Benchmark
+    public PendingVerification create() {
+        return PendingVerification.create(1234567890123456789L, nickname, code);
+    }
+
+    @Benchmark
+    public String[] legacySplitAndStrip() {
+        String[] parts = encoded.split("#");
+        return new String[]{parts[0].replaceAll("\\s+", ""), parts[1].replaceAll("\\s+", "")};
+    }
+}
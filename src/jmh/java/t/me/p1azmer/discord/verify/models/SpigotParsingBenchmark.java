@@ -0,0 +1,89 @@
+package t.me.p1azmer.discord.verify.models;
+
+import okio.Buffer;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import t.me.p1azmer.discord.verify.BenchmarkConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON handling of recorded {@code findAuthor}/{@code getAuthor} responses; no network involved.
+ * Every call starts from the raw bytes in an okio buffer, as they arrive from OkHttp, so the {@code legacy*}
+ * variants pay for {@code ResponseBody.string()} plus an {@code org.json} tree like the old client did. The streaming
+ * variants clear the buffer afterwards, as closing the response does, so okio can reuse its segment.
+ * Run with the {@code gc} profiler to compare allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpigotParsingBenchmark {
+    private byte[] findAuthor;
+    private byte[] getAuthor;
+    private byte[] notFound;
+
+    @Setup
+    public void setup() {
+        findAuthor = BenchmarkConfig.payload("findAuthor.json").getBytes(StandardCharsets.UTF_8);
+        getAuthor = BenchmarkConfig.payload("getAuthor.json").getBytes(StandardCharsets.UTF_8);
+        notFound = BenchmarkConfig.payload("notFound.json").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int readUserId() throws IOException {
+        Buffer body = new Buffer().write(findAuthor);
+        try {
+            return Spigot.readUserId(body);
+        } finally {
+            body.clear();
+        }
+    }
+
+    @Benchmark
+    public int readUserIdNotFound() throws IOException {
+        Buffer body = new Buffer().write(notFound);
+        try {
+            return Spigot.readUserId(body);
+        } finally {
+            body.clear();
+        }
+    }
+
+    @Benchmark
+    public String readDiscordIdentity() throws IOException {
+        Buffer body = new Buffer().write(getAuthor);
+        try {
+            return Spigot.readAuthor(body).discord();
+        } finally {
+            body.clear();
+        }
+    }
+
+    @Benchmark
+    public int legacyParseUserId() {
+        JSONObject json = new JSONObject(new Buffer().write(findAuthor).readUtf8());
+        return json.has("id") ? json.getInt("id") : Spigot.INVALID_ID;
+    }
+
+    @Benchmark
+    public int legacyParseUserIdNotFound() {
+        JSONObject json = new JSONObject(new Buffer().write(notFound).readUtf8());
+        return json.has("id") ? json.getInt("id") : Spigot.INVALID_ID;
+    }
+
+    @Benchmark
+    public String legacyParseDiscordIdentity() {
+        JSONObject json = new JSONObject(new Buffer().write(getAuthor).readUtf8());
+        return json.has("identities") && json.getJSONObject("identities").has("discord")
+                ? json.getJSONObject("identities").getString("discord")
+                : null;
+    }
+}
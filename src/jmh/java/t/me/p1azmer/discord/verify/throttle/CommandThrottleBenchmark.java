@@ -0,0 +1,40 @@
+package t.me.p1azmer.discord.verify.throttle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a throttle check on the event path, for one hot user and spread over many users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class CommandThrottleBenchmark {
+    private CommandThrottle throttle;
+
+    @Setup
+    public void setup() {
+        throttle = new CommandThrottle(5, Duration.ofMinutes(1));
+    }
+
+    @Benchmark
+    public long sameUser() {
+        return throttle.tryAcquire(42L);
+    }
+
+    @Benchmark
+    public long manyUsers() {
+        return throttle.tryAcquire(ThreadLocalRandom.current().nextLong(100_000));
+    }
+}
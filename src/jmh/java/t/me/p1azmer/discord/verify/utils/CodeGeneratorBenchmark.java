@@ -0,0 +1,40 @@
+package t.me.p1azmer.discord.verify.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Code generation alone, compared with the former {@code Math.pow} + {@code String.format} implementation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class CodeGeneratorBenchmark {
+    private final CodeGenerator digits = new CodeGenerator(6, CodeGenerator.DIGITS);
+    private final CodeGenerator alphanumeric = new CodeGenerator(10, "ABCDEFGHJKLMNPQRSTUVWXYZ23456789");
+
+    @Benchmark
+    public String sixDigits() {
+        return digits.next();
+    }
+
+    @Benchmark
+    public String tenAlphanumeric() {
+        return alphanumeric.next();
+    }
+
+    @Benchmark
+    public String legacyFormat() {
+        int code = ThreadLocalRandom.current().nextInt((int) Math.pow(10, 6));
+        return String.format("%0" + 6 + "d", code);
+    }
+}
@@ -0,0 +1,232 @@
+package t.me.p1azmer.discord.verify.loadtest;
+
+import org.jetbrains.annotations.NotNull;
+import org.yaml.snakeyaml.Yaml;
+import t.me.p1azmer.discord.verify.commands.VerificationCommands;
+import t.me.p1azmer.discord.verify.config.Config;
+import t.me.p1azmer.discord.verify.config.GuildConfig;
+import t.me.p1azmer.discord.verify.http.SpigotHttpClient;
+import t.me.p1azmer.discord.verify.models.PendingVerification;
+import t.me.p1azmer.discord.verify.models.Spigot;
+import t.me.p1azmer.discord.verify.pipeline.VerificationPipeline;
+import t.me.p1azmer.discord.verify.store.MemoryVerificationStore;
+import t.me.p1azmer.discord.verify.store.VerifiedAccountStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fires a burst of concurrent {@code /verify} + {@code /done} flows through {@link VerificationCommands} with
+ * Discord replaced by {@link SyntheticInteraction} and SpigotMC by {@link SpigotStandIn}, then reports throughput,
+ * latency percentiles and outcomes. Needs no network and no bot token.
+ * <p>
+ * Settings are {@code loadtest.*} system properties (see {@link Options}); {@code gradle loadTest} forwards
+ * {@code -Ploadtest.*} project properties. Exits with status 1 if the run misses the configured gate.
+ */
+public final class LoadTest {
+    private static final String SUCCESS = "messages.verify.success";
+    private static final GuildConfig GUILD = new GuildConfig(1L, 2L, 3L, 4L, List.of(5L), false);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.fromSystemProperties();
+        loadBundledConfig();
+
+        Path dataDirectory = Files.createTempDirectory("verify-loadtest");
+        boolean passed;
+        try (SpigotStandIn spigot = new SpigotStandIn(options.spigotThreads(), options.spigotLatencyMillis(),
+                options.spigotJitterMillis(), options.spigotErrorRate())) {
+            Spigot.configure(new SpigotHttpClient.Settings(spigot.getUrl(), options.spigotRequestsPerMinute(), options.spigotBurst(),
+                    Duration.ofSeconds(10), 3, 5, Duration.ofSeconds(30), 64 * 1024));
+            passed = run(options, spigot, dataDirectory);
+        } finally {
+            try (var files = Files.list(dataDirectory)) {
+                for (Path file : files.toList()) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dataDirectory);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean run(@NotNull Options options, @NotNull SpigotStandIn spigot, @NotNull Path dataDirectory) throws Exception {
+        MemoryVerificationStore store = new MemoryVerificationStore(Duration.ofMinutes(10));
+        VerifiedAccountStore verifiedAccounts = new VerifiedAccountStore(dataDirectory.resolve("verified-accounts.log"));
+        VerificationPipeline pipeline = new VerificationPipeline(options.pipelineThreads(), options.pipelineQueue());
+        VerificationCommands commands = new VerificationCommands(guildId -> store, pipeline, verifiedAccounts);
+
+        int users = options.users();
+        SyntheticInteraction[] verifies = new SyntheticInteraction[users];
+        SyntheticInteraction[] dones = new SyntheticInteraction[users];
+        ExecutorService eventThreads = Executors.newFixedThreadPool(options.eventThreads());
+        CountDownLatch go = new CountDownLatch(1);
+        for (int i = 0; i < users; i++) {
+            int index = i;
+            eventThreads.execute(() -> {
+                awaitQuietly(go);
+                flow(index, spigot, store, commands, verifies, dones);
+            });
+        }
+
+        System.out.printf("Running %d flows on %d event threads, pipeline %d/%d, SpigotMC %d+%d ms at %.1f%% errors%n",
+                users, options.eventThreads(), options.pipelineThreads(), options.pipelineQueue(),
+                options.spigotLatencyMillis(), options.spigotJitterMillis(), options.spigotErrorRate() * 100);
+        long start = System.nanoTime();
+        go.countDown();
+        eventThreads.shutdown();
+        eventThreads.awaitTermination(options.replyTimeoutSeconds(), TimeUnit.SECONDS);
+
+        Map<String, Integer> outcomes = new TreeMap<>();
+        long[] verifyLatencies = new long[users];
+        List<Long> doneLatencies = new ArrayList<>(users);
+        long deadline = start + TimeUnit.SECONDS.toNanos(options.replyTimeoutSeconds());
+        long end = start;
+        int lost = 0;
+        int successes = 0;
+        int violations = 0;
+        for (int i = 0; i < users; i++) {
+            SyntheticInteraction.Reply verifyReply = verifies[i] == null ? null : verifies[i].getReply().getNow(null);
+            verifyLatencies[i] = verifyReply == null ? 0 : verifyReply.latencyNanos();
+            if (dones[i] == null) {
+                outcomes.merge(verifyReply == null ? "verify: no reply" : "verify: " + verifyReply.messageKey(), 1, Integer::sum);
+                continue;
+            }
+
+            SyntheticInteraction.Reply reply;
+            try {
+                reply = dones[i].getReply().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException exception) {
+                lost++;
+                outcomes.merge("done: no reply", 1, Integer::sum);
+                continue;
+            }
+            end = Math.max(end, dones[i].getStart() + reply.latencyNanos());
+            doneLatencies.add(reply.latencyNanos());
+            outcomes.merge("done: " + reply.messageKey(), 1, Integer::sum);
+            if (reply.messageKey().equals(SUCCESS)) successes++;
+        }
+        long elapsed = Math.max(1, end - start);
+
+        // roles are assigned after the reply, and a stray second reply would come later still
+        Thread.sleep(200);
+        for (int i = 0; i < users; i++) {
+            if (verifies[i] != null && verifies[i].getReplyCount() > 1) violations++;
+            if (dones[i] == null) continue;
+            if (dones[i].getReplyCount() > 1) violations++;
+            SyntheticInteraction.Reply reply = dones[i].getReply().getNow(null);
+            if (reply != null && reply.messageKey().equals(SUCCESS) != dones[i].isRolesAssigned()) violations++;
+        }
+        if (verifiedAccounts.size() != successes) violations++;
+
+        pipeline.shutdown();
+        verifiedAccounts.close();
+        store.close();
+
+        double successRate = users == 0 ? 1 : successes / (double) users;
+        long[] done = doneLatencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        Arrays.sort(verifyLatencies);
+        System.out.printf("Finished in %.2f s: %.1f flows/s, %d SpigotMC requests (%d failed on purpose)%n",
+                elapsed / 1e9, users / (elapsed / 1e9), spigot.getRequests(), spigot.getInjectedErrors());
+        System.out.printf("/verify  p50 %8.3f ms  p99 %8.3f ms  max %8.3f ms%n",
+                millis(verifyLatencies, 0.50), millis(verifyLatencies, 0.99), millis(verifyLatencies, 1));
+        System.out.printf("/done    p50 %8.3f ms  p99 %8.3f ms  max %8.3f ms%n",
+                millis(done, 0.50), millis(done, 0.99), millis(done, 1));
+        outcomes.forEach((outcome, count) -> System.out.printf("  %-55s %6d%n", outcome, count));
+        System.out.printf("Success rate %.2f%%, %d without a reply, %d invariant violations%n", successRate * 100, lost, violations);
+
+        boolean passed = lost == 0 && violations == 0 && successRate >= options.minSuccessRate()
+                && (options.maxDoneP99Millis() <= 0 || millis(done, 0.99) <= options.maxDoneP99Millis());
+        System.out.println(passed ? "PASSED" : "FAILED");
+        return passed;
+    }
+
+    /**
+     * One user: {@code /verify}, put the code into the stand-in profile, then {@code /done}.
+     */
+    private static void flow(int index, @NotNull SpigotStandIn spigot, @NotNull MemoryVerificationStore store,
+                             @NotNull VerificationCommands commands, @NotNull SyntheticInteraction[] verifies,
+                             @NotNull SyntheticInteraction[] dones) {
+        long discordId = 100_000_000_000_000_000L + index;
+        String name = "LoadUser" + index;
+        int spigotId = spigot.register(name);
+
+        SyntheticInteraction verify = new SyntheticInteraction(discordId, name, Map.of("username", name));
+        verifies[index] = verify;
+        commands.verify(verify, GUILD, verify.getStart());
+        PendingVerification pending = store.get(discordId);
+        if (pending == null) return;
+
+        spigot.setDiscord(spigotId, pending.code());
+        SyntheticInteraction done = new SyntheticInteraction(discordId, name, Map.of());
+        dones[index] = done;
+        commands.done(done, GUILD, done.getStart());
+    }
+
+    private static double millis(long[] sortedNanos, double quantile) {
+        if (sortedNanos.length == 0) return 0;
+
+        int index = (int) Math.ceil(quantile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(index, sortedNanos.length - 1))] / 1e6;
+    }
+
+    private static void awaitQuietly(@NotNull CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void loadBundledConfig() throws IOException {
+        try (InputStream input = Objects.requireNonNull(LoadTest.class.getResourceAsStream("/config.yml"), "bundled config.yml")) {
+            Map<String, Object> configMap = new Yaml().load(input);
+            Config.load(configMap);
+        }
+    }
+
+    /**
+     * @param users                   flows started at once
+     * @param eventThreads            threads delivering interactions, like JDA's event pool
+     * @param spigotRequestsPerMinute the bot's own SpigotMC rate limit; high by default so the limiter is not what is measured
+     * @param minSuccessRate          share of flows that must end in {@code messages.verify.success}
+     * @param maxDoneP99Millis        {@code /done} p99 bound, or {@code 0} for none
+     */
+    record Options(int users, int eventThreads, int pipelineThreads, int pipelineQueue,
+                   long spigotLatencyMillis, long spigotJitterMillis, double spigotErrorRate, int spigotThreads,
+                   int spigotRequestsPerMinute, int spigotBurst, int replyTimeoutSeconds,
+                   double minSuccessRate, double maxDoneP99Millis) {
+
+        static @NotNull Options fromSystemProperties() {
+            return new Options(
+                    Integer.getInteger("loadtest.users", 500),
+                    Integer.getInteger("loadtest.event-threads", 8),
+                    Integer.getInteger("loadtest.pipeline-threads", 32),
+                    Integer.getInteger("loadtest.pipeline-queue", 1000),
+                    Long.getLong("loadtest.spigot-latency-ms", 50),
+                    Long.getLong("loadtest.spigot-jitter-ms", 50),
+                    Double.parseDouble(System.getProperty("loadtest.spigot-error-rate", "0")),
+                    Integer.getInteger("loadtest.spigot-threads", 64),
+                    Integer.getInteger("loadtest.spigot-requests-per-minute", 1_000_000),
+                    Integer.getInteger("loadtest.spigot-burst", 1000),
+                    Integer.getInteger("loadtest.reply-timeout-seconds", 60),
+                    Double.parseDouble(System.getProperty("loadtest.min-success-rate", "0.99")),
+                    Double.parseDouble(System.getProperty("loadtest.max-done-p99-ms", "0"))
+            );
+        }
+    }
+}
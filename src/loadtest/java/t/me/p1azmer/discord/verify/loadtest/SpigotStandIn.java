@@ -0,0 +1,165 @@
+package t.me.p1azmer.discord.verify.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the SpigotMC simple API, answering {@code findAuthor} and {@code getAuthor} from an in-memory
+ * registry after a configurable delay, and failing a configurable share of requests with HTTP 503.
+ */
+final class SpigotStandIn implements AutoCloseable {
+    private static final byte[] NOT_FOUND = "{\"code\":404,\"message\":\"Author not found.\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+    private final Map<Integer, String> discords = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    /**
+     * @param threads    requests served at once; further requests wait for the server, like a saturated upstream
+     * @param errorRate  share of requests answered with HTTP 503, between 0 and 1
+     */
+    SpigotStandIn(int threads, long latencyMillis, long jitterMillis, double errorRate) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorRate = errorRate;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Spigot Stand-in");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 256);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    @NotNull String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/simple/0.2/index.php";
+    }
+
+    /**
+     * @return the SpigotMC user id now known under {@code name}
+     */
+    int register(@NotNull String name) {
+        int id = nextId.getAndIncrement();
+        ids.put(name.toLowerCase(), id);
+        names.put(id, name);
+        return id;
+    }
+
+    void setDiscord(int userId, @NotNull String discord) {
+        discords.put(userId, discord);
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(@NotNull HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            delay();
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            Integer id = switch (query.getOrDefault("action", "")) {
+                case "findAuthor" -> ids.get(query.getOrDefault("name", "").toLowerCase());
+                case "getAuthor" -> parseId(query.get("id"));
+                default -> null;
+            };
+            String name = id == null ? null : names.get(id);
+            if (name == null) {
+                send(exchange, 404, NOT_FOUND);
+                return;
+            }
+
+            String discord = discords.get(id);
+            String identities = discord == null ? "[]" : "{\"discord\":\"" + escape(discord) + "\"}";
+            send(exchange, 200, ("{\"id\":\"" + id + "\",\"username\":\"" + escape(name) + "\",\"resource_count\":\"0\","
+                    + "\"identities\":" + identities + "}").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void delay() {
+        long millis = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        if (millis <= 0) return;
+
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void send(@NotNull HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static @NotNull Map<String, String> query(@Nullable String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) return query;
+
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator < 0) continue;
+            query.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static @Nullable Integer parseId(@Nullable String value) {
+        try {
+            return value == null ? null : Integer.valueOf(value);
+        } catch (NumberFormatException exception) {
+            return null;
+        }
+    }
+
+    private static @NotNull String escape(@NotNull String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,85 @@
+package t.me.p1azmer.discord.verify.loadtest;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import t.me.p1azmer.discord.verify.commands.CommandContext;
+import t.me.p1azmer.discord.verify.config.Config;
+import t.me.p1azmer.discord.verify.config.GuildConfig;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Discord stand-in for one deferred slash command: records the reply and when it was sent instead of calling the API.
+ */
+final class SyntheticInteraction implements CommandContext {
+    private final long userId;
+    private final String userName;
+    private final Map<String, String> options;
+    private final long start = System.nanoTime();
+    private final CompletableFuture<Reply> reply = new CompletableFuture<>();
+    private final AtomicInteger replies = new AtomicInteger();
+    private volatile boolean rolesAssigned;
+
+    SyntheticInteraction(long userId, @NotNull String userName, @NotNull Map<String, String> options) {
+        this.userId = userId;
+        this.userName = userName;
+        this.options = options;
+    }
+
+    long getStart() {
+        return start;
+    }
+
+    @NotNull CompletableFuture<Reply> getReply() {
+        return reply;
+    }
+
+    /**
+     * @return how many replies were sent; a deferred interaction should get exactly one
+     */
+    int getReplyCount() {
+        return replies.get();
+    }
+
+    boolean isRolesAssigned() {
+        return rolesAssigned;
+    }
+
+    @Override
+    public long getUserId() {
+        return userId;
+    }
+
+    @Override
+    public @NotNull String getUserName() {
+        return userName;
+    }
+
+    @Override
+    public @Nullable String getOption(@NotNull String name) {
+        return options.get(name);
+    }
+
+    @Override
+    public boolean hasRole(long roleId) {
+        return false;
+    }
+
+    @Override
+    public void reply(@NotNull String messageKey, @NotNull String... replacements) {
+        // rendered like the real reply so template cost stays on the measured path
+        String message = Config.getSnapshot().message(messageKey, null).render(replacements);
+        replies.incrementAndGet();
+        reply.complete(new Reply(messageKey, message, System.nanoTime() - start));
+    }
+
+    @Override
+    public void assignVerificationRoles(@NotNull GuildConfig guild) {
+        rolesAssigned = true;
+    }
+
+    record Reply(@NotNull String messageKey, @NotNull String message, long latencyNanos) {
+    }
+}
@@ -1,63 +1,177 @@
 package t.me.p1azmer.discord.verify;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Message;
-import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
-import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
 import net.dv8tion.jda.api.utils.cache.CacheFlag;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.yaml.snakeyaml.Yaml;
+import redis.clients.jedis.JedisPooled;
+import t.me.p1azmer.discord.verify.cleanup.MessageCleaner;
+import t.me.p1azmer.discord.verify.cluster.LeaderLock;
+import t.me.p1azmer.discord.verify.commands.CommandContext;
+import t.me.p1azmer.discord.verify.commands.CommandRegistrar;
+import t.me.p1azmer.discord.verify.commands.SlashCommandContext;
+import t.me.p1azmer.discord.verify.commands.VerificationCommands;
 import t.me.p1azmer.discord.verify.config.Config;
+import t.me.p1azmer.discord.verify.config.ConfigDiff;
+import t.me.p1azmer.discord.verify.config.ConfigReloader;
+import t.me.p1azmer.discord.verify.config.ConfigSnapshot;
+import t.me.p1azmer.discord.verify.config.GuildConfig;
+import t.me.p1azmer.discord.verify.http.SpigotHttpClient;
+import t.me.p1azmer.discord.verify.metrics.Histogram;
+import t.me.p1azmer.discord.verify.metrics.Metrics;
+import t.me.p1azmer.discord.verify.metrics.MetricsServer;
 import t.me.p1azmer.discord.verify.models.Spigot;
+import t.me.p1azmer.discord.verify.pipeline.VerificationPipeline;
+import t.me.p1azmer.discord.verify.reverify.ReverificationSweeper;
+import t.me.p1azmer.discord.verify.roles.RoleAssigner;
+import t.me.p1azmer.discord.verify.store.FileVerificationStore;
+import t.me.p1azmer.discord.verify.store.MemoryVerificationStore;
+import t.me.p1azmer.discord.verify.store.RedisVerificationStore;
+import t.me.p1azmer.discord.verify.store.VerificationStore;
+import t.me.p1azmer.discord.verify.store.VerifiedAccountStore;
+import t.me.p1azmer.discord.verify.throttle.CommandThrottle;
 import t.me.p1azmer.discord.verify.utils.FileUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j(topic = "[Bot]")
 public class Main extends ListenerAdapter {
 
-    private static final Cache<String, String> VERIFICATION_CODES = Caffeine.newBuilder()
-            .expireAfterWrite(10, TimeUnit.MINUTES)
-            .build();
-    private static final ThreadLocalRandom RANDOM = ThreadLocalRandom.current();
-    private static final String GUILD_ID_KEY = "guild.id";
-    private static final String CHANNEL_ID_KEY = "channel.id";
-    private static final String ADMIN_ROLE_ID_KEY = "admin.role.id";
-    private static final String VERIFY_ROLE_ID_KEY = "verify.role.id";
-    private static final String ASSIGN_ROLES_KEY = "assign.roles";
-    private static final String BOT_TOKEN_KEY = "bot.token";
-    private static final String CODE_FORMAT_KEY = "generation.code.name";
-    private static final String DELETE_MESSAGES_KEY = "delete-messages-in-channel";
-    private static final int CODE_LENGTH = 6;
+    private static final RoleAssigner ROLE_ASSIGNER = new RoleAssigner(3, Duration.ofSeconds(2));
+    private static final long JDA_MIN_SHUTDOWN_MILLIS = 1000;
+    private static final List<String> MESSAGE_KEYS = List.of(
+            "messages.verify.instruction",
+            "messages.verify.success",
+            "messages.verify.failure",
+            "messages.verify.discord.identifier.tag-not-found",
+            "messages.verify.discord.identifier.user-not-found",
+            "messages.verify.unavailable",
+            "messages.verify.error",
+            "messages.verify.usage",
+            "messages.verify.already-verified",
+            "messages.verify.cooldown",
+            "messages.done.no-verify",
+            "messages.done.too-many-attempts",
+            "messages.done.busy",
+            "messages.done.cooldown",
+            "messages.reload.success",
+            "messages.reload.failure",
+            "messages.reload.no-permission"
+    );
+    private static final Histogram RELOAD_DURATION = VerificationCommands.commandDuration("reload");
+    private static final CommandRegistrar COMMAND_REGISTRAR = new CommandRegistrar(Path.of("data/commands.sha256"));
+    private static final ConfigReloader CONFIG_RELOADER = new ConfigReloader(Path.of("config/config.yml"), bundledConfig(),
+            Main::validateConfig, Main::applyConfigChanges);
+    private static final String CONFIG_WATCH_KEY = "config-watch.enabled";
+    private static final String CONFIG_WATCH_DEBOUNCE_KEY = "config-watch.debounce-millis";
+    private static final String CONFIG_WATCH_POLL_KEY = "config-watch.poll-millis";
+    private static final String PIPELINE_THREADS_KEY = "verification.pipeline.threads";
+    private static final String PIPELINE_QUEUE_KEY = "verification.pipeline.queue-size";
+    private static final String STORAGE_TYPE_KEY = "storage.type";
+    private static final String STORAGE_FILE_KEY = "storage.file";
+    private static final String STORAGE_TTL_KEY = "storage.ttl-minutes";
+    private static final String STORAGE_COMPACTION_KEY = "storage.compaction-interval-minutes";
+    private static final String REDIS_URL_KEY = "storage.redis.url";
+    private static final String REDIS_KEY_PREFIX_KEY = "storage.redis.key-prefix";
+    private static final String REDIS_LEADER_LOCK_KEY = "storage.redis.leader-lock-seconds";
+    private static final String REVERIFY_ENABLED_KEY = "reverification.enabled";
+    private static final String REVERIFY_FILE_KEY = "reverification.file";
+    private static final String REVERIFY_BUDGET_KEY = "reverification.daily-request-budget";
+    private static final String REVERIFY_BATCH_KEY = "reverification.batch-size";
+    private static final String REVERIFY_INTERVAL_KEY = "reverification.interval-days";
+    private static final String REVERIFY_REMOVE_ROLES_KEY = "reverification.remove-roles";
+    private static final String THROTTLE_VERIFY_LIMIT_KEY = "throttle.verify.limit";
+    private static final String THROTTLE_VERIFY_WINDOW_KEY = "throttle.verify.window-seconds";
+    private static final String THROTTLE_DONE_LIMIT_KEY = "throttle.done.limit";
+    private static final String THROTTLE_DONE_WINDOW_KEY = "throttle.done.window-seconds";
+    private static final String SHUTDOWN_DRAIN_KEY = "shutdown.drain-seconds";
+    private static final String LEAN_MODE_KEY = "jda.lean-mode";
+    private static final String LOG_FOOTPRINT_KEY = "jda.log-footprint";
+    private static final String METRICS_ENABLED_KEY = "metrics.enabled";
+    private static final String METRICS_HOST_KEY = "metrics.host";
+    private static final String METRICS_PORT_KEY = "metrics.port";
+    private static final String CLEANUP_WINDOW_KEY = "delete-messages-batch-millis";
+    private static final String SPIGOT_API_URL_KEY = "spigot.api-url";
+    private static final String SPIGOT_RATE_KEY = "spigot.requests-per-minute";
+    private static final String SPIGOT_BURST_KEY = "spigot.burst";
+    private static final String SPIGOT_TIMEOUT_KEY = "spigot.timeout-seconds";
+    private static final String SPIGOT_RETRIES_KEY = "spigot.max-retries";
+    private static final String SPIGOT_FAILURE_THRESHOLD_KEY = "spigot.circuit-breaker.failure-threshold";
+    private static final String SPIGOT_OPEN_SECONDS_KEY = "spigot.circuit-breaker.open-seconds";
+    private static final String SPIGOT_MAX_RESPONSE_KEY = "spigot.max-response-kb";
     private static JDA jda;
+    private static VerificationPipeline pipeline;
+    private static MessageCleaner messageCleaner;
+    private static final Map<Long, VerificationStore> VERIFICATION_STORES = new ConcurrentHashMap<>();
+    private static MetricsServer metricsServer;
+    private static JedisPooled redis;
+    private static LeaderLock leaderLock;
+    private static VerifiedAccountStore verifiedAccounts;
+    private static ReverificationSweeper sweeper;
+    private static VerificationCommands commands;
+    private static volatile boolean shuttingDown;
 
     public static void main(String[] args) {
         try {
-            loadConfig();
+            long start = System.nanoTime();
+            if (!loadConfig()) {
+                throw new IllegalStateException("config/config.yml could not be loaded");
+            }
+            initializeSpigot();
+            long configured = System.nanoTime();
+            redis = initializeRedis();
+            Config.getSnapshot().guilds().keySet().forEach(Main::verificationStore);
+            verifiedAccounts = initializeVerifiedAccounts();
+            pipeline = initializePipeline();
+            commands = new VerificationCommands(Main::verificationStore, pipeline, verifiedAccounts);
+            initializeThrottles();
+            messageCleaner = new MessageCleaner(Duration.ofMillis(Config.getConfigInt(CLEANUP_WINDOW_KEY, 1500)));
+            registerGauges();
+            metricsServer = initializeMetricsServer();
+            long servicesReady = System.nanoTime();
             jda = initializeJDA();
-            registerCommands(jda);
+            long connected = System.nanoTime();
+            leaderLock = initializeLeaderLock();
+            if (isLeader()) registerCommands(jda);
+            sweeper = initializeSweeper(jda);
+            watchConfig();
             addShutdownHook();
-            log.info("Bot successfully started!");
+            long done = System.nanoTime();
+            log.info("Bot successfully started in {} ms (config {} ms, storage {} ms, gateway {} ms, commands {} ms)",
+                    TimeUnit.NANOSECONDS.toMillis(done - start),
+                    TimeUnit.NANOSECONDS.toMillis(configured - start),
+                    TimeUnit.NANOSECONDS.toMillis(servicesReady - configured),
+                    TimeUnit.NANOSECONDS.toMillis(connected - servicesReady),
+                    TimeUnit.NANOSECONDS.toMillis(done - connected));
         } catch (Exception exception) {
             log.error("Got an exception while starting the bot", exception);
         }
@@ -67,268 +181,443 @@ public class Main extends ListenerAdapter {
         Runtime.getRuntime().addShutdownHook(new Thread(Main::unload, "Shutdown Thread"));
     }
 
-    private static void shutdownJDA() {
+    /**
+     * Stops taking interactions, then gives in-flight verifications, their role requests and queued replies until
+     * {@code shutdown.drain-seconds} to finish before the stores are flushed. Whatever is still running then is
+     * abandoned and logged.
+     */
+    private static void unload() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(0, Config.getConfigInt(SHUTDOWN_DRAIN_KEY, 20)));
+        shuttingDown = true;
+        CONFIG_RELOADER.close();
+        if (sweeper != null) sweeper.shutdown();
+        if (leaderLock != null) leaderLock.release();
+        drainPipeline(deadline);
+        drainRoleAssignments(deadline);
+        // queued deletions are handed to JDA before it shuts down so its request queue can still send them
+        if (messageCleaner != null) {
+            messageCleaner.shutdown();
+            messageCleaner.flush();
+        }
+        shutdownJDA(deadline);
+        VERIFICATION_STORES.values().forEach(VerificationStore::close);
+        if (verifiedAccounts != null) verifiedAccounts.close();
+        if (redis != null) redis.close();
+        if (metricsServer != null) metricsServer.stop();
+        log.info("Bot has been unloaded!");
+    }
+
+    private static void drainPipeline(long deadline) {
+        if (pipeline == null) return;
+
+        int running = pipeline.getInFlight();
+        int queued = pipeline.getQueueDepth();
+        if (running + queued > 0) log.info("Waiting for {} running and {} queued verifications", running, queued);
+        try {
+            if (pipeline.drain(remaining(deadline))) return;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        // interrupted lookups still reply with an error, dropped ones are told to try again; JDA sends both before it stops
+        running = pipeline.getInFlight();
+        int dropped = pipeline.shutdownNow();
+        log.warn("Shutdown deadline reached, interrupted {} running and dropped {} queued verifications", running, dropped);
+    }
+
+    private static void drainRoleAssignments(long deadline) {
+        try {
+            if (ROLE_ASSIGNER.awaitIdle(remaining(deadline))) return;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        log.warn("Shutdown deadline reached with {} role requests unfinished", ROLE_ASSIGNER.getPending());
+    }
+
+    private static void shutdownJDA(long deadline) {
         if (jda == null) return;
 
+        // shutdown() still sends the requests already queued, such as the last replies; shutdownNow() drops them
         jda.shutdown();
         try {
-            if (!jda.awaitShutdown(5, TimeUnit.SECONDS)) {
-                jda.shutdownNow();
-            }
+            // the replies of verifications that finished right at the deadline still get a moment to go out
+            Duration timeout = remaining(deadline);
+            if (jda.awaitShutdown(Math.max(JDA_MIN_SHUTDOWN_MILLIS, timeout.toMillis()), TimeUnit.MILLISECONDS)) return;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            jda.shutdownNow();
         }
+        log.warn("Discord requests still queued at shutdown were dropped");
+        jda.shutdownNow();
     }
 
-    private static void unload() {
-        shutdownJDA();
-        log.info("Bot has been unloaded!");
+    private static @NotNull Duration remaining(long deadline) {
+        return Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
     }
 
-    private static void loadConfig() {
+    private static boolean loadConfig() {
         File file = new File("config/config.yml");
-        FileUtils.createFile(file);
+        if (!file.exists()) {
+            FileUtils.createFile(file);
+            try (InputStream input = Main.class.getResourceAsStream("/config.yml")) {
+                if (input != null) {
+                    FileUtils.copyFile(input, file);
+                    log.info("Successfully copied default config.yml");
+                } else {
+                    log.error("Resource 'config.yml' not found in src/main/resources");
+                }
+            } catch (Exception exception) {
+                log.error("Got an exception while copying default config.yml", exception);
+            }
+        }
+
+        return CONFIG_RELOADER.load();
+    }
 
+    /**
+     * @return the {@code config.yml} shipped in the jar, or an empty map if it is missing
+     */
+    private static @NotNull Map<String, Object> bundledConfig() {
         try (InputStream input = Main.class.getResourceAsStream("/config.yml")) {
-            if (input != null) {
-                FileUtils.copyFile(input, file);
-                log.info("Successfully copied default config.yml");
-            } else {
+            if (input == null) {
                 log.error("Resource 'config.yml' not found in src/main/resources");
+                return Map.of();
             }
+            Map<String, Object> config = new Yaml().load(input);
+            return config != null ? config : Map.of();
         } catch (Exception exception) {
-            log.error("Got an exception while copying default config.yml", exception);
-        }
-
-        try (FileInputStream fileInputStream = new FileInputStream(file)) {
-            Yaml yaml = new Yaml();
-            Config.setConfigMap(yaml.loadAs(fileInputStream, Map.class));
-            log.info("Successfully loaded config.yml");
-        } catch (Exception exception) {
-            log.error("Got an exception while loading config.yml", exception);
+            log.error("Failed to read the bundled config.yml", exception);
+            return Map.of();
         }
     }
 
-    private static @NotNull JDA initializeJDA() throws Exception {
-        String token = Config.getConfigString(BOT_TOKEN_KEY);
-        if (token == null || token.trim().isEmpty()) {
-            throw new IllegalStateException("Bot token not specified or empty in config.yml");
-        }
-
-        token = token.trim();
-        log.info("Using bot token: '{}'", token);
-        return JDABuilder.createDefault(token, EnumSet.of(GatewayIntent.GUILD_MEMBERS, GatewayIntent.GUILD_MESSAGES, GatewayIntent.MESSAGE_CONTENT))
-                .disableCache(CacheFlag.ACTIVITY, CacheFlag.VOICE_STATE, CacheFlag.EMOJI, CacheFlag.STICKER,
-                        CacheFlag.CLIENT_STATUS, CacheFlag.ONLINE_STATUS, CacheFlag.SCHEDULED_EVENTS)
-                .addEventListeners(new Main())
-                .build()
-                .awaitReady();
+    private static @NotNull List<String> validateConfig(@NotNull ConfigSnapshot config) {
+        List<String> problems = config.missingMessages(MESSAGE_KEYS);
+        if (config.codeFormat() == null) problems.add("generation.code.name");
+        problems.addAll(config.invalidGuildSettings());
+        return problems;
     }
 
-    private static void registerCommands(@NotNull JDA jda) {
-        String guildId = Config.getConfigString(GUILD_ID_KEY);
-        if (guildId != null && !guildId.isEmpty()) {
-            Guild guild = jda.getGuildById(guildId);
-            if (guild != null) {
-                guild.updateCommands().addCommands(
-                        Commands.slash("verify", "Start verifying your SpigotMC account")
-                                .addOption(OptionType.STRING, "username", "Your username on SpigotMC", true),
-                        Commands.slash("done", "Complete your SpigotMC verification"),
-                        Commands.slash("reload", "Reload bot configuration")
-                ).queue();
-            } else {
-                log.warn("Guild with ID {} not found. Commands not registered.", guildId);
-            }
-        } else {
-            log.warn("Guild ID not specified in config.yml. Commands not registered.");
+    /**
+     * Applies a reloaded config to the parts that don't read the snapshot on every use. Called on the reload thread;
+     * during startup nothing is running yet, so {@link #main} wires everything from the first snapshot itself.
+     */
+    private static void applyConfigChanges(@NotNull ConfigDiff diff) {
+        if (jda == null) return;
+
+        if (diff.spigot()) initializeSpigot();
+        if (diff.throttle()) initializeThrottles();
+        if (diff.guild()) {
+            Config.getSnapshot().guilds().keySet().forEach(Main::verificationStore);
+            if (isLeader()) registerCommands(jda);
+        }
+        if (diff.restartRequired()) {
+            log.warn("Some changed settings (bot token, gateway, storage, metrics, pipeline, cleanup, config watch) only apply after a restart");
         }
     }
 
-    @Override
-    public void onSlashCommandInteraction(@NotNull SlashCommandInteractionEvent event) {
-        if (!isCorrectGuild(event.getGuild()) || !isCorrectChannel(event)) return;
+    private static void watchConfig() {
+        if (!Config.getConfigBoolean(CONFIG_WATCH_KEY)) return;
 
-        event.deferReply(true).queue();
-        String commandName = event.getName();
-        User user = event.getUser();
-
-        switch (commandName) {
-            case "verify" -> handleVerify(event, user);
-            case "done" -> handleDone(event, user);
-            case "reload" -> handleReload(event);
+        try {
+            CONFIG_RELOADER.watch(Duration.ofMillis(Config.getConfigInt(CONFIG_WATCH_DEBOUNCE_KEY, 500)),
+                    Duration.ofMillis(Math.max(0, Config.getConfigInt(CONFIG_WATCH_POLL_KEY, 2000))));
+        } catch (IOException exception) {
+            log.error("Could not watch config.yml for changes, use /reload instead", exception);
         }
     }
 
-    @Override
-    public void onMessageReceived(@NotNull MessageReceivedEvent event) {
-        boolean enabledDeleteMessages = Config.getConfigBoolean(DELETE_MESSAGES_KEY);
-        if (!enabledDeleteMessages) return;
+    private static void initializeSpigot() {
+        String apiUrl = Config.getConfigString(SPIGOT_API_URL_KEY);
+        Spigot.configure(new SpigotHttpClient.Settings(
+                apiUrl == null || apiUrl.isBlank() ? Spigot.DEFAULT_API_URL : apiUrl.trim(),
+                Config.getConfigInt(SPIGOT_RATE_KEY, 60),
+                Config.getConfigInt(SPIGOT_BURST_KEY, 5),
+                Duration.ofSeconds(Config.getConfigInt(SPIGOT_TIMEOUT_KEY, 10)),
+                Config.getConfigInt(SPIGOT_RETRIES_KEY, 3),
+                Config.getConfigInt(SPIGOT_FAILURE_THRESHOLD_KEY, 5),
+                Duration.ofSeconds(Config.getConfigInt(SPIGOT_OPEN_SECONDS_KEY, 30)),
+                Math.max(1, Config.getConfigInt(SPIGOT_MAX_RESPONSE_KEY, 64)) * 1024L
+        ));
+    }
 
-        if (!isCorrectGuild(event.getGuild()) || !isCorrectChannel(event.getChannel().getId())) {
-            return;
-        }
+    /**
+     * Replaces both throttles, which also forgets what users have used so far.
+     */
+    private static void initializeThrottles() {
+        commands.setThrottles(
+                throttle(THROTTLE_VERIFY_LIMIT_KEY, 3, THROTTLE_VERIFY_WINDOW_KEY),
+                throttle(THROTTLE_DONE_LIMIT_KEY, 5, THROTTLE_DONE_WINDOW_KEY));
+    }
 
-        Message message = event.getMessage();
-        String content = message.getContentRaw();
-        User author = event.getAuthor();
-        if (author.isBot() || content.startsWith("/") || hasAdminRole(event)) return;
+    private static @Nullable CommandThrottle throttle(@NotNull String limitKey, int defaultLimit, @NotNull String windowKey) {
+        int limit = Config.getConfigInt(limitKey, defaultLimit);
+        if (limit <= 0) return null;
 
-        message.delete().queue(
-                success -> log.info("Deleted message from {}: {}", author.getName(), content),
-                failure -> log.error("Failed to delete message from {}", author.getName(), failure)
-        );
+        return new CommandThrottle(Math.min(limit, 0xFFFF), Duration.ofSeconds(Math.max(1, Config.getConfigInt(windowKey, 60))));
     }
 
-    private static boolean isCorrectGuild(@Nullable Guild guild) {
-        String guildId = Config.getConfigString(GUILD_ID_KEY);
-        return guild != null && guild.getId().equals(guildId);
+    private static @NotNull VerifiedAccountStore initializeVerifiedAccounts() throws IOException {
+        String file = Config.getConfigString(REVERIFY_FILE_KEY);
+        return new VerifiedAccountStore(Path.of(file == null || file.isBlank() ? "data/verified-accounts.log" : file.trim()));
     }
 
-    private static boolean isCorrectChannel(@NotNull SlashCommandInteractionEvent event) {
-        return event.getChannel().getId().equals(Config.getConfigString(CHANNEL_ID_KEY));
+    private static @Nullable ReverificationSweeper initializeSweeper(@NotNull JDA jda) {
+        if (!Config.getConfigBoolean(REVERIFY_ENABLED_KEY)) return null;
+
+        ReverificationSweeper sweeper = new ReverificationSweeper(verifiedAccounts, ROLE_ASSIGNER, jda, Main::isLeader,
+                new ReverificationSweeper.Settings(
+                        Math.max(1, Config.getConfigInt(REVERIFY_BUDGET_KEY, 1440)),
+                        Math.max(1, Config.getConfigInt(REVERIFY_BATCH_KEY, 10)),
+                        Duration.ofDays(Math.max(1, Config.getConfigInt(REVERIFY_INTERVAL_KEY, 7))),
+                        Config.getConfigBoolean(REVERIFY_REMOVE_ROLES_KEY)));
+        sweeper.start();
+        return sweeper;
     }
 
-    private static boolean isCorrectChannel(@NotNull String channelId) {
-        return channelId.equals(Config.getConfigString(CHANNEL_ID_KEY));
+    private static @Nullable JedisPooled initializeRedis() {
+        if (!"redis".equalsIgnoreCase(Config.getConfigString(STORAGE_TYPE_KEY))) return null;
+
+        String url = Config.getConfigString(REDIS_URL_KEY);
+        JedisPooled pool = new JedisPooled(URI.create(url == null || url.isBlank() ? "redis://localhost:6379" : url.trim()));
+        pool.ping();
+        log.info("Pending verifications are shared through Redis");
+        return pool;
     }
 
-    private static boolean hasAdminRole(@NotNull MessageReceivedEvent event) {
-        if (event.getMember() == null) return false;
+    /**
+     * With Redis several replicas may run at once; only the leader registers commands and deletes messages.
+     */
+    private static @Nullable LeaderLock initializeLeaderLock() {
+        if (redis == null) return null;
 
-        String adminRoleId = Config.getConfigString(ADMIN_ROLE_ID_KEY);
-        return event.getMember().getRoles().stream()
-                .anyMatch(role -> role.getId().equals(adminRoleId));
+        LeaderLock lock = new LeaderLock(redis, redisKeyPrefix() + ":leader",
+                Duration.ofSeconds(Math.max(3, Config.getConfigInt(REDIS_LEADER_LOCK_KEY, 30))), () -> registerCommands(jda));
+        lock.start();
+        return lock;
     }
 
-    private static void handleVerify(@NotNull SlashCommandInteractionEvent event, @NotNull User user) {
-        if (isAlreadyVerified(event)) {
-            replyEphemeral(event, "messages.verify.already-verified");
-            return;
-        }
+    private static boolean isLeader() {
+        return leaderLock == null || leaderLock.isLeader();
+    }
 
-        String nickname = getUsernameOption(event);
-        if (nickname == null) {
-            replyEphemeral(event, "messages.verify.usage");
-            return;
-        }
+    private static @NotNull String redisKeyPrefix() {
+        String prefix = Config.getConfigString(REDIS_KEY_PREFIX_KEY);
+        return prefix == null || prefix.isBlank() ? "verify" : prefix.trim();
+    }
 
-        String code = generateCode();
-        VERIFICATION_CODES.put(user.getId(), nickname + "#" + code);
-        replyEphemeral(event, "messages.verify.instruction", "{code}", code);
+    /**
+     * @return the pending verifications of {@code guildId}, opening its store the first time the guild is seen
+     */
+    private static @NotNull VerificationStore verificationStore(long guildId) {
+        return VERIFICATION_STORES.computeIfAbsent(guildId, id -> {
+            try {
+                return initializeVerificationStore(id);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        });
     }
 
-    private static void handleDone(@NotNull SlashCommandInteractionEvent event, @NotNull User user) {
-        if (isAlreadyVerified(event)) {
-            replyEphemeral(event, "messages.verify.already-verified");
-            return;
+    private static @NotNull VerificationStore initializeVerificationStore(long guildId) throws IOException {
+        Duration ttl = Duration.ofMinutes(Config.getConfigInt(STORAGE_TTL_KEY, 10));
+        String type = Config.getConfigString(STORAGE_TYPE_KEY);
+        if (redis != null) {
+            return new RedisVerificationStore(redis, redisKeyPrefix() + ":" + guildId, ttl);
         }
-
-        String data = VERIFICATION_CODES.getIfPresent(user.getId());
-        if (data == null) {
-            replyEphemeral(event, "messages.done.no-verify");
-            return;
+        if ("memory".equalsIgnoreCase(type)) {
+            log.info("Pending verifications of guild {} are kept in memory only", guildId);
+            return new MemoryVerificationStore(ttl);
         }
 
-        verifyUser(event, user, data);
+        String file = Config.getConfigString(STORAGE_FILE_KEY);
+        Path path = storePath(file == null || file.isBlank() ? "data/verifications.log" : file.trim(), guildId);
+        Duration compactionInterval = Duration.ofMinutes(Math.max(1, Config.getConfigInt(STORAGE_COMPACTION_KEY, 5)));
+        return new FileVerificationStore(path, ttl, compactionInterval);
     }
 
-    private static void handleReload(@NotNull SlashCommandInteractionEvent event) {
-        if (!isAdmin(event)) return;
-        loadConfig();
-        replyEphemeral(event, "messages.reload.success");
+    /**
+     * The legacy top-level {@code guild.id} keeps {@code storage.file} as is so its pending codes survive the upgrade;
+     * every other guild gets its id inserted before the extension, e.g. {@code data/verifications-1234.log}.
+     */
+    private static @NotNull Path storePath(@NotNull String file, long guildId) {
+        if (String.valueOf(guildId).equals(Config.getConfigString("guild.id"))) return Path.of(file);
+
+        int extension = file.lastIndexOf('.');
+        if (extension <= file.lastIndexOf('/')) return Path.of(file + "-" + guildId);
+        return Path.of(file.substring(0, extension) + "-" + guildId + file.substring(extension));
     }
 
-    private static boolean isAdmin(@NotNull SlashCommandInteractionEvent event) {
-        if (event.getMember() == null) return false;
+    private static @Nullable MetricsServer initializeMetricsServer() throws IOException {
+        if (!Config.getConfigBoolean(METRICS_ENABLED_KEY)) return null;
 
-        String adminRoleId = Config.getConfigString(ADMIN_ROLE_ID_KEY);
-        boolean isAdmin = event.getMember().getRoles().stream()
-                .anyMatch(role -> role.getId().equals(adminRoleId));
-        if (!isAdmin) {
-            replyEphemeral(event, "messages.reload.no-permission");
-        }
-        return isAdmin;
+        String host = Config.getConfigString(METRICS_HOST_KEY);
+        MetricsServer server = new MetricsServer(host == null || host.isBlank() ? "0.0.0.0" : host.trim(),
+                Config.getConfigInt(METRICS_PORT_KEY, 9400));
+        server.start();
+        return server;
     }
 
-    private static boolean isAlreadyVerified(@NotNull SlashCommandInteractionEvent event) {
-        if (event.getMember() == null) return false;
-        String verifyRoleId = Config.getConfigString(VERIFY_ROLE_ID_KEY);
-        return event.getMember().getRoles().stream()
-                .anyMatch(role -> role.getId().equals(verifyRoleId));
+    private static void registerGauges() {
+        Metrics.gauge("bot_pending_verifications", "Verification codes waiting for /done", () -> VERIFICATION_STORES.values().stream().mapToLong(VerificationStore::size).sum());
+        Metrics.gauge("bot_verified_accounts", "Verified members known to the re-verification sweeper", () -> verifiedAccounts.size());
+        Metrics.gauge("bot_verification_pipeline_queued", "/done requests waiting for a worker", () -> pipeline.getQueueDepth());
+        Metrics.gauge("bot_verification_pipeline_in_flight", "/done requests being processed", () -> pipeline.getInFlight());
+        Metrics.gauge("bot_verification_pipeline_capacity", "Maximum concurrent /done requests", () -> pipeline.getMaxInFlight());
     }
 
-    private static @Nullable String getUsernameOption(@NotNull SlashCommandInteractionEvent event) {
-        OptionMapping option = event.getOption("username");
-        return option != null ? option.getAsString() : null;
+    private static @NotNull VerificationPipeline initializePipeline() {
+        int threads = Config.getConfigInt(PIPELINE_THREADS_KEY, 4);
+        int queueSize = Config.getConfigInt(PIPELINE_QUEUE_KEY, 100);
+        log.info("Verification pipeline: {} in-flight, {} queued", threads, queueSize);
+        return new VerificationPipeline(threads, queueSize);
     }
 
-    private static @NotNull String generateCode() {
-        int code = RANDOM.nextInt((int) Math.pow(10, CODE_LENGTH));
-        String verificationCode = String.format("%0" + CODE_LENGTH + "d", code);
-        return Objects.requireNonNull(Config.getConfigString(CODE_FORMAT_KEY), "message " + CODE_FORMAT_KEY + " not found in config!").replace("{generated_code}", verificationCode);
+    private static @NotNull JDA initializeJDA() throws Exception {
+        String token = Config.getSnapshot().botToken();
+        if (token == null || token.trim().isEmpty()) {
+            throw new IllegalStateException("Bot token not specified or empty in config.yml");
+        }
+
+        token = token.trim();
+        log.info("Using bot token: '{}'", token);
+
+        boolean leanMode = Config.getConfigBoolean(LEAN_MODE_KEY);
+        long start = System.nanoTime();
+        JDABuilder builder;
+        if (leanMode) {
+            // Role checks only ever need the member that invoked the command or sent the message, and Discord
+            // attaches that member to the event, so nothing is cached or chunked and GUILD_MEMBERS is not needed
+            builder = JDABuilder.createLight(token, EnumSet.of(GatewayIntent.GUILD_MESSAGES, GatewayIntent.MESSAGE_CONTENT))
+                    .setMemberCachePolicy(MemberCachePolicy.NONE)
+                    .setChunkingFilter(ChunkingFilter.NONE);
+        } else {
+            builder = JDABuilder.createDefault(token, EnumSet.of(GatewayIntent.GUILD_MEMBERS, GatewayIntent.GUILD_MESSAGES, GatewayIntent.MESSAGE_CONTENT))
+                    .disableCache(CacheFlag.ACTIVITY, CacheFlag.VOICE_STATE, CacheFlag.EMOJI, CacheFlag.STICKER,
+                            CacheFlag.CLIENT_STATUS, CacheFlag.ONLINE_STATUS, CacheFlag.SCHEDULED_EVENTS);
+        }
+
+        // unload() shuts JDA down itself once in-flight work is done; JDA's own hook would call shutdownNow() right away
+        JDA jda = builder.addEventListeners(new Main())
+                .setEnableShutdownHook(false)
+                .build()
+                .awaitReady();
+        logStartupFootprint(jda, leanMode, System.nanoTime() - start);
+        return jda;
     }
 
-    private static void verifyUser(@NotNull SlashCommandInteractionEvent event, @NotNull User user, @NotNull String data) {
-        String[] parts = data.split("#");
-        String nickname = parts[0].replaceAll("\\s+", "");
-        String code = parts[1].replaceAll("\\s+", "");
+    private static void logStartupFootprint(@NotNull JDA jda, boolean leanMode, long readyNanos) {
+        long members = jda.getGuildCache().stream().mapToLong(guild -> guild.getMemberCache().size()).sum();
+        log.info("JDA ready in {} ms ({} mode), {} members cached",
+                TimeUnit.NANOSECONDS.toMillis(readyNanos), leanMode ? "lean" : "default", members);
 
-        try {
-            int userId = Spigot.fetchSpigotUserId(nickname);
-            if (userId == Spigot.INVALID_ID) {
-                replyEphemeral(event, "messages.verify.discord.identifier.user-not-found", "{username}", nickname);
-                return;
-            }
+        if (Config.getConfigBoolean(LOG_FOOTPRINT_KEY)) {
+            // a full collection gives the live set, at the cost of a pause; only done when asked for
+            System.gc();
+            log.info("Heap after a forced GC: {} MiB", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024));
+        } else {
+            log.info("Heap used {} MiB, {} MiB after the last GC",
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024), heapAfterLastGc() / (1024 * 1024));
+        }
+    }
 
-            String discordTag = Spigot.fetchSpigotUserDiscord(userId);
-            if (discordTag == null) {
-                replyEphemeral(event, "messages.verify.discord.identifier.tag-not-found", "{code}", code);
-                return;
-            }
+    /**
+     * @return heap in use right after the most recent collection of each pool, or {@code 0} before any collection
+     */
+    private static long heapAfterLastGc() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (usage != null) used += usage.getUsed();
+        }
+        return used;
+    }
+
+    private static void registerCommands(@NotNull JDA jda) {
+        Map<Long, GuildConfig> guilds = Config.getSnapshot().guilds();
+        if (guilds.isEmpty()) {
+            log.warn("No guild configured in config.yml. Commands not registered.");
+            return;
+        }
 
-            if (discordTag.equals(code)) {
-                replyEphemeral(event, "messages.verify.success");
-                assignVerificationRoles(event);
-                VERIFICATION_CODES.invalidate(user.getId());
+        for (long guildId : guilds.keySet()) {
+            Guild guild = jda.getGuildById(guildId);
+            if (guild != null) {
+                COMMAND_REGISTRAR.register(guild, List.of(
+                        Commands.slash("verify", "Start verifying your SpigotMC account")
+                                .addOption(OptionType.STRING, "username", "Your username on SpigotMC", true),
+                        Commands.slash("done", "Complete your SpigotMC verification"),
+                        Commands.slash("reload", "Reload bot configuration")
+                ));
             } else {
-                replyEphemeral(event, "messages.verify.failure", "{actual_info}", discordTag, "{code}", code);
+                log.warn("Guild with ID {} not found. Commands not registered.", guildId);
             }
-        } catch (Exception e) {
-            log.error("Error verifying user", e);
-            replyEphemeral(event, "messages.verify.error");
         }
     }
 
-    private static void assignVerificationRoles(@NotNull SlashCommandInteractionEvent event) {
-        Guild guild = event.getGuild();
-        if (guild == null) {
-            log.warn("Cannot assign roles: Guild is null");
+    @Override
+    public void onSlashCommandInteraction(@NotNull SlashCommandInteractionEvent event) {
+        // not acknowledging leaves the interaction to another replica, if there is one
+        if (shuttingDown) return;
+
+        GuildConfig guild = guildConfig(event.getGuild());
+        if (guild == null || event.getChannel().getIdLong() != guild.channelId()) return;
+
+        long start = System.nanoTime();
+        if (leaderLock == null) {
+            event.deferReply(true).queue();
+            dispatch(event, guild, start);
             return;
         }
 
-        assignRole(guild, event, Objects.requireNonNull(Config.getConfigString(VERIFY_ROLE_ID_KEY), "message " + VERIFY_ROLE_ID_KEY + " not found in config!"));
-        Objects.requireNonNull(Config.getConfigStringList(ASSIGN_ROLES_KEY), "list " + ASSIGN_ROLES_KEY + " not found!").forEach(roleId -> assignRole(guild, event, roleId));
+        // every replica receives the interaction; the one whose acknowledgement Discord accepts handles it
+        event.deferReply(true).queue(
+                success -> dispatch(event, guild, start),
+                failure -> log.debug("Interaction {} was acknowledged by another replica", event.getId()));
     }
 
-    private static void assignRole(@NotNull Guild guild, @NotNull SlashCommandInteractionEvent event, @NotNull String roleId) {
-        Role role = guild.getRoleById(roleId);
-        if (role == null) {
-            log.warn("Role with ID {} not found in guild", roleId);
-            return;
+    private static void dispatch(@NotNull SlashCommandInteractionEvent event, @NotNull GuildConfig guild, long start) {
+        CommandContext context = new SlashCommandContext(event, ROLE_ASSIGNER);
+        switch (event.getName()) {
+            case "verify" -> commands.verify(context, guild, start);
+            case "done" -> commands.done(context, guild, start);
+            case "reload" -> handleReload(context, guild, start);
         }
+    }
+
+    @Override
+    public void onMessageReceived(@NotNull MessageReceivedEvent event) {
+        if (shuttingDown || !event.isFromGuild() || !isLeader()) return;
+
+        GuildConfig guild = guildConfig(event.getGuild());
+        if (guild == null || !guild.deleteMessages() || event.getChannel().getIdLong() != guild.channelId()) return;
 
-        guild.addRoleToMember(event.getMember(), role).queue(
-                success -> log.info("Assigned role {} to {}", role.getName(), event.getUser().getName()),
-                failure -> log.error("Failed to assign role {}", roleId, failure)
-        );
+        Message message = event.getMessage();
+        String content = message.getContentRaw();
+        User author = event.getAuthor();
+        if (author.isBot() || content.startsWith("/") || SlashCommandContext.hasRole(event.getMember(), guild.adminRoleId())) return;
+
+        log.debug("Queued message from {} for deletion: {}", author.getName(), content);
+        messageCleaner.enqueue(event.getGuildChannel(), message.getIdLong());
     }
 
-    private static void replyEphemeral(@NotNull SlashCommandInteractionEvent event, @NotNull String messageKey, @NotNull String... replacements) {
-        String message = Objects.requireNonNull(Config.getConfigString(messageKey), "Message not found in config: " + messageKey);
-        for (int i = 0; i < replacements.length; i += 2) {
-            message = message.replace(replacements[i], replacements[i + 1]);
+    private static @Nullable GuildConfig guildConfig(@Nullable Guild guild) {
+        return guild == null ? null : Config.getSnapshot().guild(guild.getIdLong());
+    }
+
+    private static void handleReload(@NotNull CommandContext context, @NotNull GuildConfig guild, long start) {
+        if (!context.hasRole(guild.adminRoleId())) {
+            context.reply("messages.reload.no-permission");
+            RELOAD_DURATION.recordSince(start);
+            return;
         }
-        event.getHook().sendMessage(message).setEphemeral(true).queue();
+        CONFIG_RELOADER.reload().thenAccept(loaded -> {
+            if (loaded) {
+                log.info("SpigotMC cache stats: user ids {} ({} entries), identities {} ({} entries)",
+                        Spigot.getUserIdCacheStats(), Spigot.getUserIdCacheSize(),
+                        Spigot.getIdentityCacheStats(), Spigot.getIdentityCacheSize());
+            }
+            context.reply(loaded ? "messages.reload.success" : "messages.reload.failure");
+            RELOAD_DURATION.recordSince(start);
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+package t.me.p1azmer.discord.verify.cleanup;
+
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildMessageChannel;
+import net.dv8tion.jda.api.utils.TimeUtil;
+import org.jetbrains.annotations.NotNull;
+import t.me.p1azmer.discord.verify.metrics.Counter;
+import t.me.p1azmer.discord.verify.metrics.Histogram;
+import t.me.p1azmer.discord.verify.metrics.Metrics;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects messages that should be removed from the verification channel and deletes them in batches.
+ * Messages younger than Discord's bulk-delete limit go through {@code deleteMessagesByIds} in chunks of up to 100;
+ * older ones, and lone messages, are deleted one by one.
+ */
+@Slf4j
+public class MessageCleaner {
+    private static final int MAX_BULK_SIZE = 100;
+    // Discord rejects bulk deletes of messages older than 14 days; keep a margin for the time the batch waits
+    private static final Duration BULK_DELETE_MAX_AGE = Duration.ofDays(14).minusMinutes(5);
+
+    private static final Counter BULK_DELETED = Metrics.counter("bot_messages_deleted_total", "Messages removed from the verification channel", "mode", "bulk");
+    private static final Counter SINGLE_DELETED = Metrics.counter("bot_messages_deleted_total", "Messages removed from the verification channel", "mode", "single");
+    private static final Counter DELETE_FAILURES = Metrics.counter("bot_message_delete_failures_total", "Failed message delete requests");
+    private static final Histogram BULK_DURATION = deleteDuration("bulk");
+    private static final Histogram SINGLE_DURATION = deleteDuration("single");
+
+    private final Map<Long, ChannelQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ScheduledExecutorService scheduler;
+    private long lastRateSample = System.nanoTime();
+    private long lastDeletedSample;
+    private volatile double deletedPerSecond;
+
+    public MessageCleaner(@NotNull Duration batchWindow) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Message Cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long windowMillis = Math.max(100, batchWindow.toMillis());
+        this.scheduler.scheduleWithFixedDelay(this::flushSafely, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+
+        Metrics.gauge("bot_message_cleaner_queued", "Messages waiting for the next batch delete", this::getQueueSize);
+        Metrics.gauge("bot_message_cleaner_deleted_per_second", "Messages deleted per second over the last batch window", this::getDeletedPerSecond);
+    }
+
+    public void enqueue(@NotNull GuildMessageChannel channel, long messageId) {
+        queues.computeIfAbsent(channel.getIdLong(), id -> new ChannelQueue(channel)).messageIds().add(messageId);
+        queued.incrementAndGet();
+    }
+
+    public int getQueueSize() {
+        return queued.get();
+    }
+
+    public long getDeletedCount() {
+        return BULK_DELETED.get() + SINGLE_DELETED.get();
+    }
+
+    public double getDeletedPerSecond() {
+        return deletedPerSecond;
+    }
+
+    /**
+     * Deletes everything queued so far. Synchronized because the final flush at shutdown may overlap a scheduled one.
+     */
+    public synchronized void flush() {
+        OffsetDateTime bulkCutoff = OffsetDateTime.now().minus(BULK_DELETE_MAX_AGE);
+        for (ChannelQueue queue : queues.values()) {
+            List<String> recent = new ArrayList<>();
+            Long messageId;
+            while ((messageId = queue.messageIds().poll()) != null) {
+                queued.decrementAndGet();
+                if (TimeUtil.getTimeCreated(messageId).isAfter(bulkCutoff)) {
+                    recent.add(Long.toUnsignedString(messageId));
+                } else {
+                    deleteSingle(queue.channel(), Long.toUnsignedString(messageId));
+                }
+            }
+
+            for (int from = 0; from < recent.size(); from += MAX_BULK_SIZE) {
+                List<String> chunk = recent.subList(from, Math.min(recent.size(), from + MAX_BULK_SIZE));
+                if (chunk.size() == 1) {
+                    deleteSingle(queue.channel(), chunk.get(0));
+                } else {
+                    deleteBulk(queue.channel(), List.copyOf(chunk));
+                }
+            }
+        }
+        sampleRate();
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception exception) {
+            log.error("Failed to flush queued message deletions", exception);
+        }
+    }
+
+    private void deleteBulk(@NotNull GuildMessageChannel channel, @NotNull List<String> messageIds) {
+        long start = System.nanoTime();
+        channel.deleteMessagesByIds(messageIds).queue(
+                success -> {
+                    BULK_DURATION.recordSince(start);
+                    BULK_DELETED.add(messageIds.size());
+                    log.info("Deleted {} messages in #{}", messageIds.size(), channel.getName());
+                },
+                failure -> {
+                    DELETE_FAILURES.increment();
+                    log.error("Failed to bulk delete {} messages in #{}", messageIds.size(), channel.getName(), failure);
+                }
+        );
+    }
+
+    private void deleteSingle(@NotNull GuildMessageChannel channel, @NotNull String messageId) {
+        long start = System.nanoTime();
+        channel.deleteMessageById(messageId).queue(
+                success -> {
+                    SINGLE_DURATION.recordSince(start);
+                    SINGLE_DELETED.increment();
+                    log.info("Deleted message {} in #{}", messageId, channel.getName());
+                },
+                failure -> {
+                    DELETE_FAILURES.increment();
+                    log.error("Failed to delete message {} in #{}", messageId, channel.getName(), failure);
+                }
+        );
+    }
+
+    private static @NotNull Histogram deleteDuration(@NotNull String mode) {
+        return Metrics.histogram("bot_message_delete_duration_seconds", "Time for Discord to confirm a message delete request", "mode", mode);
+    }
+
+    private void sampleRate() {
+        long now = System.nanoTime();
+        long total = getDeletedCount();
+        long elapsed = now - lastRateSample;
+        if (elapsed <= 0) return;
+
+        deletedPerSecond = (total - lastDeletedSample) / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+        lastRateSample = now;
+        lastDeletedSample = total;
+    }
+
+    private record ChannelQueue(@NotNull GuildMessageChannel channel, @NotNull Queue<Long> messageIds) {
+        ChannelQueue(@NotNull GuildMessageChannel channel) {
+            this(channel, new ConcurrentLinkedQueue<>());
+        }
+    }
+}
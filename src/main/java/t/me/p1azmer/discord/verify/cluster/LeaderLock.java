@@ -0,0 +1,106 @@
+package t.me.p1azmer.discord.verify.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.params.SetParams;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Elects one bot replica as leader through a Redis key holding the leader's id with a TTL.
+ * The leader renews the key every third of the TTL; the others try to take it over, so a replica that
+ * dies is replaced within one TTL.
+ */
+@Slf4j
+public class LeaderLock {
+    private static final String RENEW_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end
+            return 0
+            """;
+    private static final String RELEASE_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end
+            return 0
+            """;
+
+    private final UnifiedJedis redis;
+    private final String key;
+    private final long ttlMillis;
+    private final String replicaId = UUID.randomUUID().toString();
+    private final Runnable onAcquired;
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean leader;
+
+    /**
+     * @param onAcquired runs on the lock thread whenever this replica becomes leader
+     */
+    public LeaderLock(@NotNull UnifiedJedis redis, @NotNull String key, @NotNull Duration ttl, @NotNull Runnable onAcquired) {
+        this.redis = redis;
+        this.key = key;
+        this.ttlMillis = ttl.toMillis();
+        this.onAcquired = onAcquired;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Leader Lock");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Makes the first attempt on the calling thread, so {@link #isLeader()} is settled when this returns.
+     */
+    public void start() {
+        leader = tryAcquire();
+        log.info(leader ? "This replica is the leader ({})" : "Another replica is the leader, this one is {}", replicaId);
+        long interval = Math.max(1, ttlMillis / 3);
+        scheduler.scheduleWithFixedDelay(this::tick, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isLeader() {
+        return leader;
+    }
+
+    /**
+     * Stops renewing and hands the lock over right away instead of letting it expire.
+     */
+    public void release() {
+        scheduler.shutdownNow();
+        if (!leader) return;
+
+        leader = false;
+        try {
+            redis.eval(RELEASE_SCRIPT, List.of(key), List.of(replicaId));
+        } catch (Exception exception) {
+            log.warn("Failed to release leader lock, it expires in {} ms", ttlMillis, exception);
+        }
+    }
+
+    private void tick() {
+        try {
+            if (leader) {
+                if (!Long.valueOf(1).equals(redis.eval(RENEW_SCRIPT, List.of(key), List.of(replicaId, Long.toString(ttlMillis))))) {
+                    leader = false;
+                    log.warn("Lost the leader lock");
+                }
+            } else if (tryAcquire()) {
+                leader = true;
+                log.info("This replica became the leader ({})", replicaId);
+                onAcquired.run();
+            }
+        } catch (Exception exception) {
+            // without Redis nobody can confirm leadership, so step down rather than risk two leaders
+            if (leader) log.warn("Stepping down as leader, the lock could not be renewed", exception);
+            else log.warn("Failed to check the leader lock", exception);
+            leader = false;
+        }
+    }
+
+    private boolean tryAcquire() {
+        return "OK".equals(redis.set(key, replicaId, SetParams.setParams().nx().px(ttlMillis)));
+    }
+}
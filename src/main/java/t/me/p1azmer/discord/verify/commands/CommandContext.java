@@ -0,0 +1,40 @@
+package t.me.p1azmer.discord.verify.commands;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import t.me.p1azmer.discord.verify.config.GuildConfig;
+
+/**
+ * The parts of a slash command interaction that {@link VerificationCommands} needs, so the command logic can be
+ * driven by something other than JDA, e.g. the offline load test.
+ * <p>
+ * The interaction is already deferred when a handler receives it; every handler path ends in exactly one {@link #reply}.
+ */
+public interface CommandContext {
+
+    long getUserId();
+
+    @NotNull String getUserName();
+
+    /**
+     * @return the string value of option {@code name}, or {@code null} if it was not given
+     */
+    @Nullable String getOption(@NotNull String name);
+
+    /**
+     * @return whether the invoking member has the role, {@code false} outside a guild
+     */
+    boolean hasRole(long roleId);
+
+    /**
+     * Sends the {@code messages.*} template {@code messageKey} to the user as an ephemeral follow-up.
+     *
+     * @param replacements alternating placeholders and values, as for {@link t.me.p1azmer.discord.verify.config.MessageTemplate#render}
+     */
+    void reply(@NotNull String messageKey, @NotNull String... replacements);
+
+    /**
+     * Gives the invoking member the roles a verified member gets in {@code guild}.
+     */
+    void assignVerificationRoles(@NotNull GuildConfig guild);
+}
@@ -0,0 +1,94 @@
+package t.me.p1azmer.discord.verify.commands;
+
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pushes slash commands to a guild only when their definitions changed since the last successful push.
+ * The hash of the pushed definitions is remembered per guild in a small text file.
+ */
+@Slf4j
+public class CommandRegistrar {
+    private final Path hashFile;
+    private final Map<Long, String> hashes = new HashMap<>();
+
+    public CommandRegistrar(@NotNull Path hashFile) {
+        this.hashFile = hashFile;
+        load();
+    }
+
+    public synchronized void register(@NotNull Guild guild, @NotNull List<? extends CommandData> commands) {
+        String hash = hash(commands);
+        if (hash.equals(hashes.get(guild.getIdLong()))) {
+            log.info("Slash commands for guild {} are up to date, skipping registration", guild.getName());
+            return;
+        }
+
+        guild.updateCommands().addCommands(commands).queue(
+                success -> {
+                    log.info("Registered {} slash commands for guild {}", success.size(), guild.getName());
+                    remember(guild.getIdLong(), hash);
+                },
+                failure -> log.error("Failed to register slash commands for guild {}", guild.getName(), failure)
+        );
+    }
+
+    private synchronized void remember(long guildId, @NotNull String hash) {
+        hashes.put(guildId, hash);
+
+        StringBuilder content = new StringBuilder();
+        hashes.forEach((id, value) -> content.append(id).append(' ').append(value).append('\n'));
+        try {
+            Path parent = hashFile.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            Files.writeString(hashFile, content, StandardCharsets.UTF_8);
+        } catch (IOException exception) {
+            log.error("Failed to save slash command hashes to {}", hashFile, exception);
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(hashFile)) return;
+
+        try {
+            for (String line : Files.readAllLines(hashFile, StandardCharsets.UTF_8)) {
+                int separator = line.indexOf(' ');
+                if (separator <= 0) continue;
+                hashes.put(Long.parseLong(line.substring(0, separator)), line.substring(separator + 1).trim());
+            }
+        } catch (IOException | NumberFormatException exception) {
+            log.warn("Failed to read slash command hashes from {}, commands will be re-registered", hashFile, exception);
+            hashes.clear();
+        }
+    }
+
+    private static @NotNull String hash(@NotNull List<? extends CommandData> commands) {
+        MessageDigest digest = sha256();
+        for (CommandData command : commands) {
+            digest.update(command.toData().toJson());
+            digest.update((byte) '\n');
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static @NotNull MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not available", exception);
+        }
+    }
+}
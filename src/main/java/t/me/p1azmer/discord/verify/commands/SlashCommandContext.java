@@ -0,0 +1,75 @@
+package t.me.p1azmer.discord.verify.commands;
+
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import t.me.p1azmer.discord.verify.config.Config;
+import t.me.p1azmer.discord.verify.config.GuildConfig;
+import t.me.p1azmer.discord.verify.roles.RoleAssigner;
+
+/**
+ * {@link CommandContext} backed by a JDA slash command event.
+ */
+@Slf4j
+public class SlashCommandContext implements CommandContext {
+    private final SlashCommandInteractionEvent event;
+    private final RoleAssigner roleAssigner;
+
+    public SlashCommandContext(@NotNull SlashCommandInteractionEvent event, @NotNull RoleAssigner roleAssigner) {
+        this.event = event;
+        this.roleAssigner = roleAssigner;
+    }
+
+    @Override
+    public long getUserId() {
+        return event.getUser().getIdLong();
+    }
+
+    @Override
+    public @NotNull String getUserName() {
+        return event.getUser().getName();
+    }
+
+    @Override
+    public @Nullable String getOption(@NotNull String name) {
+        OptionMapping option = event.getOption(name);
+        return option != null ? option.getAsString() : null;
+    }
+
+    @Override
+    public boolean hasRole(long roleId) {
+        return hasRole(event.getMember(), roleId);
+    }
+
+    @Override
+    public void reply(@NotNull String messageKey, @NotNull String... replacements) {
+        String message = Config.getSnapshot().message(messageKey, event.getUserLocale().getLocale()).render(replacements);
+        event.getHook().sendMessage(message).setEphemeral(true).queue();
+    }
+
+    @Override
+    public void assignVerificationRoles(@NotNull GuildConfig config) {
+        Guild guild = event.getGuild();
+        Member member = event.getMember();
+        if (guild == null || member == null) {
+            log.warn("Cannot assign roles: Guild or member is null");
+            return;
+        }
+
+        roleAssigner.assign(guild, member, config);
+    }
+
+    public static boolean hasRole(@Nullable Member member, long roleId) {
+        if (member == null) return false;
+
+        for (Role role : member.getRoles()) {
+            if (role.getIdLong() == roleId) return true;
+        }
+        return false;
+    }
+}
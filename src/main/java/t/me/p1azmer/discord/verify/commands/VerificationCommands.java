@@ -0,0 +1,254 @@
+package t.me.p1azmer.discord.verify.commands;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import t.me.p1azmer.discord.verify.config.Config;
+import t.me.p1azmer.discord.verify.config.ConfigSnapshot;
+import t.me.p1azmer.discord.verify.config.GuildConfig;
+import t.me.p1azmer.discord.verify.config.MessageTemplate;
+import t.me.p1azmer.discord.verify.http.SpigotUnavailableException;
+import t.me.p1azmer.discord.verify.metrics.Counter;
+import t.me.p1azmer.discord.verify.metrics.Histogram;
+import t.me.p1azmer.discord.verify.metrics.Metrics;
+import t.me.p1azmer.discord.verify.models.PendingVerification;
+import t.me.p1azmer.discord.verify.models.Spigot;
+import t.me.p1azmer.discord.verify.models.VerifiedAccount;
+import t.me.p1azmer.discord.verify.pipeline.VerificationPipeline;
+import t.me.p1azmer.discord.verify.store.VerificationStore;
+import t.me.p1azmer.discord.verify.store.VerifiedAccountStore;
+import t.me.p1azmer.discord.verify.throttle.CommandThrottle;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+/**
+ * The {@code /verify} and {@code /done} flows, independent of how the interaction arrived.
+ * <p>
+ * {@code /verify} is answered on the calling thread; {@code /done} is handed to the {@link VerificationPipeline}
+ * because it waits on SpigotMC.
+ */
+@Slf4j
+public class VerificationCommands {
+    private static final int CODE_GENERATION_ATTEMPTS = 10;
+    private static final Histogram VERIFY_DURATION = commandDuration("verify");
+    private static final Histogram DONE_DURATION = commandDuration("done");
+    private static final Counter VERIFICATIONS_SUCCEEDED = verificationResult("success");
+    private static final Counter VERIFICATIONS_MISMATCHED = verificationResult("code_mismatch");
+    private static final Counter VERIFICATIONS_USER_NOT_FOUND = verificationResult("user_not_found");
+    private static final Counter VERIFICATIONS_TAG_NOT_FOUND = verificationResult("tag_not_found");
+    private static final Counter VERIFICATIONS_UNAVAILABLE = verificationResult("spigot_unavailable");
+    private static final Counter VERIFICATIONS_REJECTED = verificationResult("pipeline_full");
+    private static final Counter VERIFICATIONS_DROPPED = verificationResult("dropped_on_shutdown");
+    private static final Counter VERIFICATIONS_FAILED = verificationResult("error");
+    private static final Counter VERIFY_THROTTLED = throttled("verify");
+    private static final Counter DONE_THROTTLED = throttled("done");
+
+    private final LongFunction<VerificationStore> stores;
+    private final VerificationPipeline pipeline;
+    private final VerifiedAccountStore verifiedAccounts;
+    private volatile CommandThrottle verifyThrottle;
+    private volatile CommandThrottle doneThrottle;
+
+    /**
+     * @param stores the pending verification store of a guild, by guild ID
+     */
+    public VerificationCommands(@NotNull LongFunction<VerificationStore> stores, @NotNull VerificationPipeline pipeline,
+                                @NotNull VerifiedAccountStore verifiedAccounts) {
+        this.stores = stores;
+        this.pipeline = pipeline;
+        this.verifiedAccounts = verifiedAccounts;
+    }
+
+    /**
+     * Replaces both throttles; {@code null} turns the check off for that command.
+     */
+    public void setThrottles(@Nullable CommandThrottle verifyThrottle, @Nullable CommandThrottle doneThrottle) {
+        this.verifyThrottle = verifyThrottle;
+        this.doneThrottle = doneThrottle;
+    }
+
+    /**
+     * @param start {@link System#nanoTime()} when the interaction arrived
+     */
+    public void verify(@NotNull CommandContext context, @NotNull GuildConfig guild, long start) {
+        try {
+            if (isThrottled(context, verifyThrottle, VERIFY_THROTTLED, "messages.verify.cooldown")) return;
+
+            if (context.hasRole(guild.verifyRoleId())) {
+                context.reply("messages.verify.already-verified");
+                return;
+            }
+
+            String nickname = context.getOption("username");
+            if (nickname == null) {
+                context.reply("messages.verify.usage");
+                return;
+            }
+
+            VerificationStore store = stores.apply(guild.guildId());
+            String code = generateCode(Config.getSnapshot(), store::isCodePending);
+            if (code == null) {
+                log.error("Could not find a free verification code, consider a longer generation.code.length");
+                context.reply("messages.verify.error");
+                return;
+            }
+            store.put(PendingVerification.create(context.getUserId(), nickname, code));
+            context.reply("messages.verify.instruction", "{code}", code);
+        } finally {
+            VERIFY_DURATION.recordSince(start);
+        }
+    }
+
+    /**
+     * Checks the pending verification and queues the SpigotMC lookup. The duration is recorded when the reply is
+     * sent, which for an accepted request is on a pipeline worker.
+     *
+     * @param start {@link System#nanoTime()} when the interaction arrived
+     */
+    public void done(@NotNull CommandContext context, @NotNull GuildConfig guild, long start) {
+        if (isThrottled(context, doneThrottle, DONE_THROTTLED, "messages.done.cooldown")) {
+            DONE_DURATION.recordSince(start);
+            return;
+        }
+
+        if (context.hasRole(guild.verifyRoleId())) {
+            context.reply("messages.verify.already-verified");
+            DONE_DURATION.recordSince(start);
+            return;
+        }
+
+        VerificationStore store = stores.apply(guild.guildId());
+        PendingVerification pending = store.get(context.getUserId());
+        if (pending == null) {
+            context.reply("messages.done.no-verify");
+            DONE_DURATION.recordSince(start);
+            return;
+        }
+
+        if (pending.attempts() >= Config.getSnapshot().maxAttempts()) {
+            store.remove(context.getUserId());
+            context.reply("messages.done.too-many-attempts");
+            DONE_DURATION.recordSince(start);
+            return;
+        }
+
+        // the attempt is only counted once SpigotMC has answered, so a full pipeline or an outage costs the user nothing
+        if (pipeline.submit(() -> verifyUser(context, guild, store, pending, start), () -> busy(context, VERIFICATIONS_DROPPED, start)) == null) {
+            busy(context, VERIFICATIONS_REJECTED, start);
+        }
+    }
+
+    /**
+     * @return a code formatted with {@code generation.code.name} that no pending verification uses,
+     * or {@code null} if no free code was found
+     */
+    public static @Nullable String generateCode(@NotNull ConfigSnapshot config, @NotNull Predicate<String> isPending) {
+        MessageTemplate format = Objects.requireNonNull(config.codeFormat(), "message generation.code.name not found in config!");
+        for (int attempt = 0; attempt < CODE_GENERATION_ATTEMPTS; attempt++) {
+            String code = format.render("{generated_code}", config.codeGenerator().next());
+            if (!isPending.test(PendingVerification.normalize(code))) return code;
+        }
+        return null;
+    }
+
+    private static void busy(@NotNull CommandContext context, @NotNull Counter result, long start) {
+        result.increment();
+        context.reply("messages.done.busy");
+        DONE_DURATION.recordSince(start);
+    }
+
+    private static boolean isThrottled(@NotNull CommandContext context, @Nullable CommandThrottle throttle,
+                                       @NotNull Counter throttled, @NotNull String messageKey) {
+        if (throttle == null) return false;
+
+        long waitNanos = throttle.tryAcquire(context.getUserId());
+        if (waitNanos == 0) return false;
+
+        throttled.increment();
+        context.reply(messageKey, "{seconds}", Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+        return true;
+    }
+
+    private void verifyUser(@NotNull CommandContext context, @NotNull GuildConfig guild,
+                            @NotNull VerificationStore store, @NotNull PendingVerification pending, long start) {
+        String nickname = pending.spigotName();
+        String code = pending.code();
+
+        try {
+            int userId = Spigot.fetchSpigotUserId(nickname);
+            if (userId == Spigot.INVALID_ID) {
+                VERIFICATIONS_USER_NOT_FOUND.increment();
+                store.recordAttempt(pending);
+                context.reply("messages.verify.discord.identifier.user-not-found", "{username}", nickname);
+                return;
+            }
+
+            String discordTag = Spigot.getCachedSpigotUserDiscord(userId);
+            if (discordTag == null || !discordTag.equals(code)) {
+                discordTag = Spigot.fetchSpigotUserDiscord(userId);
+            }
+            if (discordTag == null) {
+                VERIFICATIONS_TAG_NOT_FOUND.increment();
+                store.recordAttempt(pending);
+                context.reply("messages.verify.discord.identifier.tag-not-found", "{code}", code);
+                return;
+            }
+
+            if (discordTag.equals(code)) {
+                if (!store.complete(pending)) {
+                    // a concurrent /done already completed it, or a new /verify replaced the code
+                    context.reply("messages.done.no-verify");
+                    return;
+                }
+                VERIFICATIONS_SUCCEEDED.increment();
+                context.reply("messages.verify.success");
+                context.assignVerificationRoles(guild);
+                recordVerifiedAccount(context, guild, userId, code);
+            } else {
+                VERIFICATIONS_MISMATCHED.increment();
+                store.recordAttempt(pending);
+                context.reply("messages.verify.failure", "{actual_info}", discordTag, "{code}", code);
+            }
+        } catch (SpigotUnavailableException e) {
+            VERIFICATIONS_UNAVAILABLE.increment();
+            log.warn("SpigotMC unavailable while verifying {}: {}", context.getUserName(), e.getMessage());
+            context.reply("messages.verify.unavailable");
+        } catch (Exception e) {
+            VERIFICATIONS_FAILED.increment();
+            log.error("Error verifying user", e);
+            context.reply("messages.verify.error");
+        } finally {
+            DONE_DURATION.recordSince(start);
+        }
+    }
+
+    /**
+     * Remembers the account for the re-verification sweeper. The verification itself is already done, so a failure
+     * here only means the sweeper will not re-check this member.
+     */
+    private void recordVerifiedAccount(@NotNull CommandContext context, @NotNull GuildConfig guild, int spigotId, @NotNull String code) {
+        try {
+            verifiedAccounts.record(VerifiedAccount.create(guild.guildId(), context.getUserId(), spigotId, code, context.getUserName()));
+        } catch (RuntimeException exception) {
+            log.error("Failed to record verified account of {} for re-verification", context.getUserName(), exception);
+        }
+    }
+
+    /**
+     * The {@code bot_command_duration_seconds} series of {@code command}, shared with commands handled elsewhere.
+     */
+    public static @NotNull Histogram commandDuration(@NotNull String command) {
+        return Metrics.histogram("bot_command_duration_seconds", "Time from receiving a slash command to its reply being queued", "command", command);
+    }
+
+    private static @NotNull Counter throttled(@NotNull String command) {
+        return Metrics.counter("bot_commands_throttled_total", "Slash commands refused because the user hit the rate limit", "command", command);
+    }
+
+    private static @NotNull Counter verificationResult(@NotNull String result) {
+        return Metrics.counter("bot_verifications_total", "Finished /done verifications by result", "result", result);
+    }
+}
@@ -1,103 +1,68 @@
 package t.me.p1azmer.discord.verify.config;
 
-import lombok.Setter;
 import lombok.experimental.UtilityClass;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @Slf4j
 @UtilityClass
 public class Config {
-    @Setter
-    Map<String, Object> configMap = new HashMap<>();
+    private volatile ConfigSnapshot snapshot = ConfigSnapshot.EMPTY;
 
-    @SuppressWarnings("unchecked")
-    public @Nullable String getConfigString(@NotNull String key) {
-        if (configMap == null) {
-            log.warn("Configuration is not loaded. Cannot get value for key: {}", key);
-            return null;
-        }
+    /**
+     * Parses the raw YAML tree into a new snapshot and publishes it in a single write,
+     * so concurrent readers see either the previous config or the new one, never a mix.
+     */
+    public @NotNull ConfigSnapshot load(@NotNull Map<String, Object> configMap) {
+        ConfigSnapshot loaded = ConfigSnapshot.from(configMap);
+        publish(loaded);
+        return loaded;
+    }
 
-        String[] parts = key.split("\\.");
-        Object value = configMap;
-        for (String part : parts) {
-            if (value instanceof Map) {
-                value = ((Map<String, Object>) value).get(part);
-            } else {
-                log.debug("Key part '{}' is not a map in path: {}", part, key);
-                return null;
-            }
-        }
+    /**
+     * Makes an already built and validated snapshot the current configuration.
+     */
+    public void publish(@NotNull ConfigSnapshot loaded) {
+        snapshot = loaded;
+    }
+
+    public @NotNull ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public @Nullable String getConfigString(@NotNull String key) {
+        String value = snapshot.values().get(key);
         if (value == null) {
             log.debug("No value found for key: {}", key);
-            return null;
         }
-        return value.toString();
+        return value;
     }
 
-    @SuppressWarnings("unchecked")
     public boolean getConfigBoolean(@NotNull String key) {
-        String[] parts = key.split("\\.");
-        Object value = configMap;
-        for (String part : parts) {
-            if (value instanceof Map) {
-                value = ((Map<String, Object>) value).get(part);
-            } else {
-                return false;
-            }
-        }
-        return value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(value.toString());
+        return Boolean.parseBoolean(snapshot.values().get(key));
     }
 
-    @SuppressWarnings("unchecked")
-    public @Nullable List<String> getConfigStringList(@NotNull String key) {
-        if (configMap == null) {
-            log.warn("Configuration is not loaded. Cannot get string list for key: {}", key);
-            return null;
-        }
+    public int getConfigInt(@NotNull String key, int defaultValue) {
+        String value = getConfigString(key);
+        if (value == null) return defaultValue;
 
-        String[] parts = key.split("\\.");
-        Object value = configMap;
-        for (String part : parts) {
-            if (value instanceof Map) {
-                value = ((Map<String, Object>) value).get(part);
-            } else {
-                log.debug("Key part '{}' is not a map in path: {}", part, key);
-                return null;
-            }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException exception) {
+            log.warn("Value for key '{}' is not a number: {}", key, value);
+            return defaultValue;
         }
+    }
 
+    public @Nullable List<String> getConfigStringList(@NotNull String key) {
+        List<String> value = snapshot.lists().get(key);
         if (value == null) {
-            log.debug("No value found for key: {}", key);
-            return null;
-        }
-
-        if (value instanceof List) {
-            try {
-                List<?> rawList = (List<?>) value;
-                List<String> result = new ArrayList<>();
-                for (Object item : rawList) {
-                    if (item != null) {
-                        result.add(item.toString());
-                    } else {
-                        log.warn("Null item found in list for key: {}", key);
-                        result.add(null); // Или пропустить, если null не нужен
-                    }
-                }
-                return result;
-            } catch (Exception e) {
-                log.error("Failed to process list for key: {}", key, e);
-                return null;
-            }
-        } else {
-            log.warn("Value for key '{}' is not a list: {}", key, value.getClass().getSimpleName());
-            return null;
+            log.debug("No list found for key: {}", key);
         }
+        return value;
     }
 }
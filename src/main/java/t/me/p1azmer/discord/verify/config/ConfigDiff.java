@@ -0,0 +1,87 @@
+package t.me.p1azmer.discord.verify.config;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * What changed between two config snapshots, grouped by the part of the bot that has to react to it.
+ */
+public record ConfigDiff(
+        boolean guild,
+        boolean channel,
+        boolean roles,
+        boolean messages,
+        boolean codeGeneration,
+        boolean spigot,
+        boolean throttle,
+        boolean restartRequired,
+        boolean other
+) {
+    private static final List<String> RESTART_PREFIXES = List.of(
+            "bot.", "jda.", "storage.", "metrics.", "verification.pipeline.", "delete-messages-batch-millis", "config-watch.");
+
+    public static @NotNull ConfigDiff between(@NotNull ConfigSnapshot previous, @NotNull ConfigSnapshot current) {
+        boolean any = !previous.values().equals(current.values()) || !previous.lists().equals(current.lists());
+        if (!any) return new ConfigDiff(false, false, false, false, false, false, false, false, false);
+
+        ConfigDiff grouped = new ConfigDiff(
+                !previous.guilds().keySet().equals(current.guilds().keySet()),
+                anyGuildChanged(previous, current, guild -> List.of(guild.channelId(), guild.deleteMessages())),
+                anyGuildChanged(previous, current, guild -> List.of(guild.adminRoleId(), guild.verifyRoleId(), guild.assignRoleIds())),
+                changed(previous, current, "messages.") || changed(previous, current, "locales."),
+                changed(previous, current, "generation."),
+                changed(previous, current, "spigot."),
+                changed(previous, current, "throttle."),
+                RESTART_PREFIXES.stream().anyMatch(prefix -> changed(previous, current, prefix)),
+                false
+        );
+        // settings read on every use, such as verification.max-attempts, need no action but are still a change
+        return grouped.isEmpty() ? new ConfigDiff(false, false, false, false, false, false, false, false, true) : grouped;
+    }
+
+    public boolean isEmpty() {
+        return !guild && !channel && !roles && !messages && !codeGeneration && !spigot && !throttle && !restartRequired && !other;
+    }
+
+    public @NotNull List<String> describe() {
+        List<String> changes = new ArrayList<>();
+        if (guild) changes.add("guilds");
+        if (channel) changes.add("channel");
+        if (roles) changes.add("roles");
+        if (messages) changes.add("messages");
+        if (codeGeneration) changes.add("code generation");
+        if (spigot) changes.add("SpigotMC client");
+        if (throttle) changes.add("command throttles");
+        if (restartRequired) changes.add("settings applied on restart");
+        if (other) changes.add("other settings");
+        return changes;
+    }
+
+    private static boolean anyGuildChanged(@NotNull ConfigSnapshot previous, @NotNull ConfigSnapshot current,
+                                           @NotNull Function<GuildConfig, List<Object>> settings) {
+        for (GuildConfig guild : current.guilds().values()) {
+            GuildConfig before = previous.guild(guild.guildId());
+            if (before != null && !settings.apply(before).equals(settings.apply(guild))) return true;
+        }
+        return false;
+    }
+
+    private static boolean changed(@NotNull ConfigSnapshot previous, @NotNull ConfigSnapshot current, @NotNull String prefix) {
+        return changed(previous.values(), current.values(), prefix) || changed(previous.lists(), current.lists(), prefix);
+    }
+
+    private static boolean changed(@NotNull Map<String, ?> previous, @NotNull Map<String, ?> current, @NotNull String prefix) {
+        for (Map.Entry<String, ?> entry : previous.entrySet()) {
+            if (entry.getKey().startsWith(prefix) && !Objects.equals(entry.getValue(), current.get(entry.getKey()))) return true;
+        }
+        for (String key : current.keySet()) {
+            if (key.startsWith(prefix) && !previous.containsKey(key)) return true;
+        }
+        return false;
+    }
+}
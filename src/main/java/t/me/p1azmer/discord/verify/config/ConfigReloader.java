@@ -0,0 +1,250 @@
+package t.me.p1azmer.discord.verify.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Loads {@code config.yml} into a new {@link ConfigSnapshot}, validates it and publishes it through {@link Config}.
+ * Reloads run on a dedicated thread, either on request or when the file changes on disk (debounced);
+ * an invalid file is rejected and the previous snapshot keeps serving.
+ * <p>
+ * Changes are noticed through a {@link WatchService} on the file's directory and, as a fallback, by polling the
+ * file's modification time and size. The watch service misses changes the host makes to a bind mount on some
+ * Docker setups; polling catches those, as long as the directory is mounted rather than the file itself.
+ * <p>
+ * Message templates missing from the file are taken from the bundled defaults, so a config written for an older
+ * version keeps loading after an upgrade adds new messages.
+ */
+@Slf4j
+public class ConfigReloader {
+    private static final String MESSAGES_KEY = "messages";
+
+    private final Path file;
+    private final Map<String, Object> defaults;
+    private final Function<ConfigSnapshot, List<String>> validator;
+    private final Consumer<ConfigDiff> listener;
+    private final ScheduledExecutorService executor;
+    private WatchService watchService;
+    private ScheduledFuture<?> scheduledReload;
+    private byte[] lastContent;
+    private FileStamp lastStamp;
+
+    /**
+     * @param defaults  the bundled configuration, whose {@code messages} fill in templates the file lacks
+     * @param validator returns the problems with a freshly parsed snapshot; a non-empty result rejects it
+     * @param listener  called on the reload thread with what changed after a new snapshot was published
+     */
+    public ConfigReloader(@NotNull Path file, @NotNull Map<String, Object> defaults,
+                          @NotNull Function<ConfigSnapshot, List<String>> validator, @NotNull Consumer<ConfigDiff> listener) {
+        this.file = file;
+        this.defaults = defaults;
+        this.validator = validator;
+        this.listener = listener;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Config Reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads the file on the calling thread.
+     *
+     * @return whether a valid configuration is now published
+     */
+    public synchronized boolean load() {
+        try {
+            byte[] content = Files.readAllBytes(file);
+            Map<String, Object> configMap = new Yaml().load(new String(content, StandardCharsets.UTF_8));
+            if (configMap == null) {
+                log.error("{} is empty, keeping the previous configuration", file);
+                return false;
+            }
+
+            List<String> filled = new ArrayList<>();
+            fillMissing(configMap, defaults, MESSAGES_KEY, filled);
+            if (!filled.isEmpty()) {
+                log.warn("{} is missing {} messages, using the bundled defaults for {}", file, filled.size(), filled);
+            }
+
+            ConfigSnapshot loaded = ConfigSnapshot.from(configMap);
+            List<String> problems = validator.apply(loaded);
+            if (!problems.isEmpty()) {
+                log.error("{} is invalid {}, keeping the previous configuration", file, problems);
+                return false;
+            }
+
+            ConfigSnapshot previous = Config.getSnapshot();
+            Config.publish(loaded);
+            lastContent = content;
+
+            ConfigDiff diff = ConfigDiff.between(previous, loaded);
+            log.info("Successfully loaded {}{}", file, diff.isEmpty() ? " (no changes)" : ", changed: " + String.join(", ", diff.describe()));
+            if (!diff.isEmpty()) listener.accept(diff);
+            return true;
+        } catch (Exception exception) {
+            log.error("Got an exception while loading {}", file, exception);
+            return false;
+        }
+    }
+
+    /**
+     * Loads the file on the reload thread.
+     */
+    public @NotNull CompletableFuture<Boolean> reload() {
+        return CompletableFuture.supplyAsync(this::load, executor);
+    }
+
+    /**
+     * Starts watching the file's directory; changes are applied once the file has been quiet for {@code debounce}.
+     *
+     * @param pollInterval how often the file's modification time and size are checked as well,
+     *                     or {@link Duration#ZERO} to rely on the watch service alone
+     */
+    public void watch(@NotNull Duration debounce, @NotNull Duration pollInterval) throws IOException {
+        long debounceMillis = debounce.toMillis();
+        Path directory = file.toAbsolutePath().getParent();
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread watcher = new Thread(() -> watchLoop(debounceMillis), "Config Watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+
+        long pollMillis = pollInterval.toMillis();
+        if (pollMillis > 0) {
+            lastStamp = FileStamp.of(file);
+            executor.scheduleWithFixedDelay(() -> poll(debounceMillis), pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+            log.info("Watching {} for changes, polling every {} ms", file, pollMillis);
+        } else {
+            log.info("Watching {} for changes", file);
+        }
+    }
+
+    public void close() {
+        executor.shutdownNow();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException exception) {
+                log.warn("Failed to close config watcher", exception);
+            }
+        }
+    }
+
+    private void watchLoop(long debounceMillis) {
+        Path fileName = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean relevant = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (fileName.equals(event.context())) relevant = true;
+                }
+                key.reset();
+                if (relevant) scheduleReload(debounceMillis);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+            // closed on shutdown
+        }
+    }
+
+    /**
+     * Runs on the reload thread, so a stamp that keeps changing while the file is written pushes the reload back
+     * just like repeated watch events do.
+     */
+    private void poll(long debounceMillis) {
+        FileStamp stamp = FileStamp.of(file);
+        if (stamp.equals(lastStamp)) return;
+
+        lastStamp = stamp;
+        scheduleReload(debounceMillis);
+    }
+
+    private synchronized void scheduleReload(long debounceMillis) {
+        if (scheduledReload != null) scheduledReload.cancel(false);
+        scheduledReload = executor.schedule(this::reloadIfChanged, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Copies the entries under {@code key} that {@code target} lacks from {@code source}, recursing into sections.
+     */
+    private static void fillMissing(@NotNull Map<String, Object> target, @NotNull Map<String, Object> source,
+                                    @NotNull String key, @NotNull List<String> filled) {
+        fillMissing(target, source, key, key, filled);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void fillMissing(@NotNull Map<String, Object> target, @NotNull Map<String, Object> source,
+                                    @NotNull String key, @NotNull String path, @NotNull List<String> filled) {
+        Object defaultValue = source.get(key);
+        if (defaultValue == null) return;
+
+        Object value = target.get(key);
+        if (value == null) {
+            target.put(key, defaultValue);
+            filled.add(path);
+        } else if (value instanceof Map<?, ?> section && defaultValue instanceof Map<?, ?> defaultSection) {
+            for (Object child : defaultSection.keySet()) {
+                String childKey = String.valueOf(child);
+                fillMissing((Map<String, Object>) section, (Map<String, Object>) defaultSection, childKey, path + "." + childKey, filled);
+            }
+        }
+    }
+
+    private void reloadIfChanged() {
+        try {
+            byte[] content = Files.readAllBytes(file);
+            synchronized (this) {
+                if (Arrays.equals(content, lastContent)) return;
+            }
+        } catch (IOException exception) {
+            log.warn("Failed to read {} after a change, will retry on the next change", file, exception);
+            return;
+        }
+        load();
+    }
+
+    /**
+     * What polling compares; {@link #MISSING} while the file cannot be read, e.g. between an editor's delete and rename.
+     */
+    private record FileStamp(long modifiedMillis, long size) {
+        static final FileStamp MISSING = new FileStamp(-1, -1);
+
+        static @NotNull FileStamp of(@NotNull Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return new FileStamp(attributes.lastModifiedTime().toMillis(), attributes.size());
+            } catch (IOException exception) {
+                return MISSING;
+            }
+        }
+    }
+}
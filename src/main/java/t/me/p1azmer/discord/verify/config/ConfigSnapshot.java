@@ -0,0 +1,293 @@
+package t.me.p1azmer.discord.verify.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import t.me.p1azmer.discord.verify.utils.CodeGenerator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Immutable, typed view of {@code config.yml}. Built once per load and published through
+ * {@link Config#getSnapshot()}, so event handlers read plain fields instead of walking the YAML tree.
+ */
+@Slf4j
+public record ConfigSnapshot(
+        @Nullable String botToken,
+        @NotNull Map<Long, GuildConfig> guilds,
+        @Nullable MessageTemplate codeFormat,
+        @NotNull CodeGenerator codeGenerator,
+        int maxAttempts,
+        @NotNull Map<String, MessageTemplate> messages,
+        @NotNull Map<String, Map<String, MessageTemplate>> localizedMessages,
+        @NotNull Map<String, String> values,
+        @NotNull Map<String, List<String>> lists
+) {
+    public static final long UNSET_ID = 0L;
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final ConfigSnapshot EMPTY = new ConfigSnapshot(null, Map.of(), null,
+            new CodeGenerator(CodeGenerator.DEFAULT_LENGTH, CodeGenerator.DIGITS), DEFAULT_MAX_ATTEMPTS, Map.of(), Map.of(), Map.of(), Map.of());
+
+    static final String BOT_TOKEN_KEY = "bot.token";
+    static final String GUILDS_PREFIX = "guilds.";
+    static final String GUILD_ID_KEY = "guild.id";
+    static final String CHANNEL_ID_KEY = "channel.id";
+    static final String ADMIN_ROLE_ID_KEY = "admin.role.id";
+    static final String VERIFY_ROLE_ID_KEY = "verify.role.id";
+    static final String ASSIGN_ROLES_KEY = "assign.roles";
+    static final String CODE_FORMAT_KEY = "generation.code.name";
+    static final String CODE_LENGTH_KEY = "generation.code.length";
+    static final String CODE_ALPHABET_KEY = "generation.code.alphabet";
+    static final String DELETE_MESSAGES_KEY = "delete-messages-in-channel";
+    static final String MAX_ATTEMPTS_KEY = "verification.max-attempts";
+    static final String MESSAGES_PREFIX = "messages.";
+    static final String LOCALES_PREFIX = "locales.";
+
+    public static @NotNull ConfigSnapshot from(@NotNull Map<String, Object> root) {
+        Map<String, String> values = new HashMap<>();
+        Map<String, List<String>> lists = new HashMap<>();
+        flatten("", root, values, lists);
+
+        Map<String, MessageTemplate> messages = new HashMap<>();
+        Map<String, Map<String, MessageTemplate>> localizedMessages = new HashMap<>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String key = entry.getKey();
+            if (key.startsWith(MESSAGES_PREFIX)) {
+                messages.put(key, MessageTemplate.compile(entry.getValue()));
+            } else if (key.startsWith(LOCALES_PREFIX)) {
+                // locales.<locale>.verify.success overrides messages.verify.success for that locale
+                int localeEnd = key.indexOf('.', LOCALES_PREFIX.length());
+                if (localeEnd < 0) continue;
+                String locale = key.substring(LOCALES_PREFIX.length(), localeEnd);
+                String messageKey = MESSAGES_PREFIX + key.substring(localeEnd + 1);
+                localizedMessages.computeIfAbsent(locale, ignored -> new HashMap<>())
+                        .put(messageKey, MessageTemplate.compile(entry.getValue()));
+            }
+        }
+        localizedMessages.replaceAll((locale, templates) -> Collections.unmodifiableMap(templates));
+
+        String codeFormat = values.get(CODE_FORMAT_KEY);
+        return new ConfigSnapshot(
+                values.get(BOT_TOKEN_KEY),
+                guilds(values, lists),
+                codeFormat == null ? null : MessageTemplate.compile(codeFormat),
+                codeGenerator(values.get(CODE_LENGTH_KEY), values.get(CODE_ALPHABET_KEY)),
+                maxAttempts(values.get(MAX_ATTEMPTS_KEY)),
+                Collections.unmodifiableMap(messages),
+                Collections.unmodifiableMap(localizedMessages),
+                Collections.unmodifiableMap(values),
+                Collections.unmodifiableMap(lists)
+        );
+    }
+
+    /**
+     * @return the settings for {@code guildId}, or {@code null} if the bot is not configured for that guild
+     */
+    public @Nullable GuildConfig guild(long guildId) {
+        return guilds.get(guildId);
+    }
+
+    /**
+     * Looks up a {@code messages.*} template, preferring the user's locale (e.g. {@code pt-BR}, then {@code pt}).
+     *
+     * @throws IllegalStateException if the key is not configured; {@link #missingMessages} catches this at load time
+     */
+    public @NotNull MessageTemplate message(@NotNull String key, @Nullable String locale) {
+        if (locale != null && !localizedMessages.isEmpty()) {
+            MessageTemplate localized = localized(locale, key);
+            if (localized == null) {
+                int separator = locale.indexOf('-');
+                if (separator > 0) localized = localized(locale.substring(0, separator), key);
+            }
+            if (localized != null) return localized;
+        }
+
+        MessageTemplate template = messages.get(key);
+        if (template == null) throw new IllegalStateException("Message not found in config: " + key);
+        return template;
+    }
+
+    /**
+     * @return the keys among {@code keys} that have no default template
+     */
+    public @NotNull List<String> missingMessages(@NotNull Collection<String> keys) {
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            if (!messages.containsKey(key)) missing.add(key);
+        }
+        return missing;
+    }
+
+    /**
+     * @return the keys that leave the bot without a usable guild: no guild configured, a guild ID that is not a
+     * Discord ID, or a guild without a channel or verification role. Such a config would load and then have every
+     * interaction ignored.
+     */
+    public @NotNull List<String> invalidGuildSettings() {
+        List<String> invalid = new ArrayList<>();
+        String legacyGuildId = values.get(GUILD_ID_KEY);
+        if (legacyGuildId != null && !isId(legacyGuildId)) invalid.add(GUILD_ID_KEY);
+
+        Map<Long, String> sections = new HashMap<>();
+        Set<String> sectionKeys = new TreeSet<>();
+        for (String key : values.keySet()) addSectionKey(key, sectionKeys);
+        for (String key : lists.keySet()) addSectionKey(key, sectionKeys);
+        for (String sectionKey : sectionKeys) {
+            String id = sectionKey.substring(GUILDS_PREFIX.length());
+            if (isId(id)) {
+                sections.putIfAbsent(Long.parseUnsignedLong(id.trim()), sectionKey + ".");
+            } else {
+                invalid.add(sectionKey);
+            }
+        }
+
+        if (guilds.isEmpty() && invalid.isEmpty()) invalid.add(GUILD_ID_KEY);
+        for (GuildConfig guild : guilds.values()) {
+            String prefix = sections.getOrDefault(guild.guildId(), "");
+            if (guild.channelId() == UNSET_ID) invalid.add(prefix + CHANNEL_ID_KEY);
+            if (guild.verifyRoleId() == UNSET_ID) invalid.add(prefix + VERIFY_ROLE_ID_KEY);
+        }
+        return invalid;
+    }
+
+    private @Nullable MessageTemplate localized(@NotNull String locale, @NotNull String key) {
+        Map<String, MessageTemplate> templates = localizedMessages.get(locale);
+        return templates == null ? null : templates.get(key);
+    }
+
+    // YAML keys are not always strings: an unquoted guild ID under guilds: is loaded as a number
+    private static void flatten(@NotNull String prefix, @NotNull Map<?, ?> map,
+                                @NotNull Map<String, String> values, @NotNull Map<String, List<String>> lists) {
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            String key = prefix.isEmpty() ? String.valueOf(entry.getKey()) : prefix + "." + entry.getKey();
+            Object value = entry.getValue();
+            if (value instanceof Map<?, ?> nested) {
+                flatten(key, nested, values, lists);
+            } else if (value instanceof List<?> rawList) {
+                List<String> result = new ArrayList<>(rawList.size());
+                for (Object item : rawList) {
+                    if (item != null) {
+                        result.add(item.toString());
+                    } else {
+                        log.warn("Null item found in list for key: {}", key);
+                    }
+                }
+                lists.put(key, Collections.unmodifiableList(result));
+            } else if (value != null) {
+                values.put(key, value.toString());
+            }
+        }
+    }
+
+    private static @NotNull Map<Long, GuildConfig> guilds(@NotNull Map<String, String> values, @NotNull Map<String, List<String>> lists) {
+        Map<Long, String> sections = new HashMap<>();
+        for (String key : values.keySet()) {
+            addGuildSection(key, sections);
+        }
+        for (String key : lists.keySet()) {
+            addGuildSection(key, sections);
+        }
+
+        Map<Long, GuildConfig> guilds = new HashMap<>();
+        for (Map.Entry<Long, String> section : sections.entrySet()) {
+            guilds.put(section.getKey(), guild(section.getKey(), section.getValue(), values, lists));
+        }
+
+        // the single-guild layout from before guilds: sections existed
+        long legacyGuildId = parseId(GUILD_ID_KEY, values.get(GUILD_ID_KEY));
+        if (legacyGuildId != UNSET_ID && !guilds.containsKey(legacyGuildId)) {
+            guilds.put(legacyGuildId, guild(legacyGuildId, "", values, lists));
+        }
+        return Collections.unmodifiableMap(guilds);
+    }
+
+    private static void addGuildSection(@NotNull String key, @NotNull Map<Long, String> sections) {
+        if (!key.startsWith(GUILDS_PREFIX)) return;
+
+        int idEnd = key.indexOf('.', GUILDS_PREFIX.length());
+        if (idEnd < 0) return;
+        long guildId = parseId(key, key.substring(GUILDS_PREFIX.length(), idEnd));
+        if (guildId != UNSET_ID) sections.putIfAbsent(guildId, key.substring(0, idEnd + 1));
+    }
+
+    private static @NotNull GuildConfig guild(long guildId, @NotNull String prefix,
+                                              @NotNull Map<String, String> values, @NotNull Map<String, List<String>> lists) {
+        List<Long> assignRoleIds = new ArrayList<>();
+        List<String> roles = lists.get(prefix + ASSIGN_ROLES_KEY);
+        for (String roleId : roles != null ? roles : lists.getOrDefault(ASSIGN_ROLES_KEY, List.of())) {
+            long id = parseId(ASSIGN_ROLES_KEY, roleId);
+            if (id != UNSET_ID) assignRoleIds.add(id);
+        }
+
+        return new GuildConfig(
+                guildId,
+                parseId(CHANNEL_ID_KEY, value(prefix, CHANNEL_ID_KEY, values)),
+                parseId(ADMIN_ROLE_ID_KEY, value(prefix, ADMIN_ROLE_ID_KEY, values)),
+                parseId(VERIFY_ROLE_ID_KEY, value(prefix, VERIFY_ROLE_ID_KEY, values)),
+                List.copyOf(assignRoleIds),
+                Boolean.parseBoolean(value(prefix, DELETE_MESSAGES_KEY, values))
+        );
+    }
+
+    private static @Nullable String value(@NotNull String prefix, @NotNull String key, @NotNull Map<String, String> values) {
+        String value = values.get(prefix + key);
+        return value != null ? value : values.get(key);
+    }
+
+    private static @NotNull CodeGenerator codeGenerator(@Nullable String length, @Nullable String alphabet) {
+        try {
+            return new CodeGenerator(
+                    length == null ? CodeGenerator.DEFAULT_LENGTH : Integer.parseInt(length.trim()),
+                    alphabet == null || alphabet.isEmpty() ? CodeGenerator.DIGITS : alphabet);
+        } catch (IllegalArgumentException exception) {
+            log.warn("Invalid code generation settings ({}), using {} digits", exception.getMessage(), CodeGenerator.DEFAULT_LENGTH);
+            return new CodeGenerator(CodeGenerator.DEFAULT_LENGTH, CodeGenerator.DIGITS);
+        }
+    }
+
+    private static void addSectionKey(@NotNull String key, @NotNull Set<String> sectionKeys) {
+        if (!key.startsWith(GUILDS_PREFIX)) return;
+
+        int idEnd = key.indexOf('.', GUILDS_PREFIX.length());
+        if (idEnd > 0) sectionKeys.add(key.substring(0, idEnd));
+    }
+
+    private static boolean isId(@NotNull String value) {
+        try {
+            return Long.parseUnsignedLong(value.trim()) != UNSET_ID;
+        } catch (NumberFormatException exception) {
+            return false;
+        }
+    }
+
+    private static int maxAttempts(@Nullable String value) {
+        if (value == null) return DEFAULT_MAX_ATTEMPTS;
+
+        try {
+            int maxAttempts = Integer.parseInt(value.trim());
+            if (maxAttempts >= 1) return maxAttempts;
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        log.warn("Value for key '{}' is not a positive number: {}, using {}", MAX_ATTEMPTS_KEY, value, DEFAULT_MAX_ATTEMPTS);
+        return DEFAULT_MAX_ATTEMPTS;
+    }
+
+    private static long parseId(@NotNull String key, @Nullable String value) {
+        if (value == null || value.isBlank()) return UNSET_ID;
+
+        try {
+            return Long.parseUnsignedLong(value.trim());
+        } catch (NumberFormatException exception) {
+            log.warn("Value for key '{}' is not a valid Discord ID: {}", key, value);
+            return UNSET_ID;
+        }
+    }
+}
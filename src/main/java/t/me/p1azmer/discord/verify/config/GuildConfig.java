@@ -0,0 +1,19 @@
+package t.me.p1azmer.discord.verify.config;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Settings for one guild the bot serves, from its {@code guilds.<id>} section. Keys the section leaves out
+ * fall back to the top-level ones, which is also how a legacy single-guild {@code guild.id} config is read.
+ */
+public record GuildConfig(
+        long guildId,
+        long channelId,
+        long adminRoleId,
+        long verifyRoleId,
+        @NotNull List<Long> assignRoleIds,
+        boolean deleteMessages
+) {
+}
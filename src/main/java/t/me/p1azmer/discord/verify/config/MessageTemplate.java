@@ -0,0 +1,84 @@
+package t.me.p1azmer.discord.verify.config;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A configured message split once into literal text and {@code {placeholder}} slots, so rendering is a single
+ * pass into a pre-sized builder instead of one {@link String#replace} per placeholder.
+ */
+public final class MessageTemplate {
+    private final String source;
+    // literals[i] is followed by placeholders[i]; the last literal has no placeholder after it
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int literalLength;
+
+    private MessageTemplate(@NotNull String source, @NotNull String[] literals, @NotNull String[] placeholders) {
+        this.source = source;
+        this.literals = literals;
+        this.placeholders = placeholders;
+        int length = 0;
+        for (String literal : literals) length += literal.length();
+        this.literalLength = length;
+    }
+
+    public static @NotNull MessageTemplate compile(@NotNull String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        int literalStart = 0;
+        int open = source.indexOf('{');
+        while (open >= 0) {
+            int close = source.indexOf('}', open + 1);
+            if (close < 0) break;
+
+            int nestedOpen = source.indexOf('{', open + 1);
+            if (nestedOpen >= 0 && nestedOpen < close) {
+                open = nestedOpen;
+                continue;
+            }
+
+            literals.add(source.substring(literalStart, open));
+            placeholders.add(source.substring(open, close + 1));
+            literalStart = close + 1;
+            open = source.indexOf('{', literalStart);
+        }
+        literals.add(source.substring(literalStart));
+        return new MessageTemplate(source, literals.toArray(String[]::new), placeholders.toArray(String[]::new));
+    }
+
+    /**
+     * @param replacements alternating placeholders (including braces) and values, e.g. {@code "{code}", "123456"};
+     *                     placeholders without a value are kept as written
+     */
+    public @NotNull String render(@NotNull String... replacements) {
+        if (placeholders.length == 0) return source;
+
+        int capacity = literalLength;
+        for (int i = 1; i < replacements.length; i += 2) {
+            capacity += replacements[i].length();
+        }
+
+        StringBuilder builder = new StringBuilder(capacity);
+        for (int i = 0; i < placeholders.length; i++) {
+            builder.append(literals[i]);
+            builder.append(valueOf(placeholders[i], replacements));
+        }
+        builder.append(literals[literals.length - 1]);
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static @NotNull String valueOf(@NotNull String placeholder, @NotNull String[] replacements) {
+        for (int i = 0; i + 1 < replacements.length; i += 2) {
+            if (replacements[i].equals(placeholder)) return replacements[i + 1];
+        }
+        return placeholder;
+    }
+}
@@ -0,0 +1,76 @@
+package t.me.p1azmer.discord.verify.http;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+
+/**
+ * Opens after {@code failureThreshold} consecutive failures and rejects calls for {@code openDuration}.
+ * After that a single probe request is let through; its outcome closes or re-opens the breaker.
+ */
+@Slf4j
+public class CircuitBreaker {
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        if (failureThreshold < 1) throw new IllegalArgumentException("failureThreshold must be positive: " + failureThreshold);
+
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    public synchronized boolean allowRequest() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> {
+                if (System.nanoTime() - openedAt < openNanos) yield false;
+                state = State.HALF_OPEN;
+                probing = true;
+                yield true;
+            }
+            case HALF_OPEN -> {
+                if (probing) yield false;
+                probing = true;
+                yield true;
+            }
+        };
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            log.info("SpigotMC circuit breaker closed");
+        }
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+    }
+
+    /**
+     * Releases a permit from {@link #allowRequest()} for a request that never reached SpigotMC.
+     */
+    public synchronized void cancelRequest() {
+        probing = false;
+    }
+
+    public synchronized void recordFailure() {
+        probing = false;
+        if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+            if (state != State.OPEN) {
+                log.warn("SpigotMC circuit breaker opened after {} failures", failures);
+            }
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
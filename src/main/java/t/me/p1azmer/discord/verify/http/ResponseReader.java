@@ -0,0 +1,19 @@
+package t.me.p1azmer.discord.verify.http;
+
+import okio.BufferedSource;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Turns a response body into the value a caller needs, reading it as a stream.
+ */
+@FunctionalInterface
+public interface ResponseReader<T> {
+
+    /**
+     * @param body the response body, limited to the client's maximum size; reading past it throws
+     *             {@link ResponseTooLargeException}
+     */
+    @NotNull T read(@NotNull BufferedSource body) throws IOException;
+}
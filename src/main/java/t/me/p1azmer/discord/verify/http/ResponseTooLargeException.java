@@ -0,0 +1,36 @@
+package t.me.p1azmer.discord.verify.http;
+
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Source;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Thrown while reading a response body that is larger than the client accepts.
+ */
+public class ResponseTooLargeException extends IOException {
+    public ResponseTooLargeException(long maxBytes) {
+        super("Response body exceeds " + maxBytes + " bytes");
+    }
+
+    /**
+     * @return {@code source}, failing once more than {@code maxBytes} have been read from it
+     */
+    static @NotNull Source limit(@NotNull Source source, long maxBytes) {
+        return new ForwardingSource(source) {
+            private long remaining = maxBytes;
+
+            @Override
+            public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, Math.min(byteCount, remaining + 1));
+                if (read > 0) {
+                    remaining -= read;
+                    if (remaining < 0) throw new ResponseTooLargeException(maxBytes);
+                }
+                return read;
+            }
+        };
+    }
+}
@@ -0,0 +1,245 @@
+package t.me.p1azmer.discord.verify.http;
+
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.JsonEncodingException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.Okio;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * HTTP client for the SpigotMC simple API. Every request goes through a token bucket, a per-request deadline,
+ * retries with exponential backoff on 429/5xx and a circuit breaker. Concurrent requests with the same key
+ * share a single call. Response bodies are streamed into a {@link ResponseReader} and never buffered whole.
+ */
+@Slf4j
+public class SpigotHttpClient {
+    private static final long BASE_BACKOFF_MILLIS = 250;
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+    // shared by every client so reconfiguring keeps warm connections; HTTP/2 is used when the server offers it
+    private static final OkHttpClient SHARED_HTTP = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+            .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .build();
+
+    private final OkHttpClient http;
+    @Getter
+    private final HttpUrl baseUrl;
+    private final long deadlineNanos;
+    private final int maxRetries;
+    private final long maxResponseBytes;
+    @Getter
+    private final TokenBucket rateLimiter;
+    @Getter
+    private final CircuitBreaker circuitBreaker;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    public SpigotHttpClient(@NotNull Settings settings) {
+        this.baseUrl = HttpUrl.get(settings.baseUrl());
+        this.deadlineNanos = settings.deadline().toNanos();
+        this.maxRetries = settings.maxRetries();
+        this.maxResponseBytes = settings.maxResponseBytes();
+        this.rateLimiter = new TokenBucket(settings.requestsPerMinute(), settings.burst());
+        this.circuitBreaker = new CircuitBreaker(settings.failureThreshold(), settings.openDuration());
+        this.http = SHARED_HTTP.newBuilder()
+                .connectTimeout(settings.deadline())
+                .readTimeout(settings.deadline())
+                .callTimeout(settings.deadline())
+                .build();
+    }
+
+    /**
+     * Performs a GET request, joining an identical request that is already in flight.
+     *
+     * @param key    identifies the logical request for coalescing, e.g. {@code "getAuthor:1234"}; requests sharing
+     *               a key must use readers producing the same type
+     * @param reader extracts the result from the response body
+     * @return what {@code reader} read, or {@code null} if the response had no body
+     * @throws SpigotUnavailableException if SpigotMC could not answer within the deadline, rejected the request
+     *                                    (a 4xx other than 404, e.g. a Cloudflare 403), or sent a body that is
+     *                                    malformed or larger than {@link Settings#maxResponseBytes()}
+     * @throws InterruptedException       if the calling thread was interrupted; this does not count against SpigotMC
+     *                                    in the circuit breaker
+     */
+    @SuppressWarnings("unchecked")
+    public <T> @Nullable T get(@NotNull String key, @NotNull HttpUrl url, @NotNull ResponseReader<T> reader) throws SpigotUnavailableException, InterruptedException {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            return (T) await(existing);
+        }
+
+        try {
+            T result = execute(url, reader);
+            call.complete(result);
+            return result;
+        } catch (SpigotUnavailableException | InterruptedException | RuntimeException exception) {
+            call.completeExceptionally(exception);
+            throw exception;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private @Nullable Object await(@NotNull CompletableFuture<Object> call) throws SpigotUnavailableException, InterruptedException {
+        try {
+            return call.get(deadlineNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException exception) {
+            throw new SpigotUnavailableException("Timed out waiting for a shared SpigotMC request", exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof SpigotUnavailableException unavailable) throw unavailable;
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new SpigotUnavailableException("Shared SpigotMC request failed", cause);
+        }
+    }
+
+    private <T> @Nullable T execute(@NotNull HttpUrl url, @NotNull ResponseReader<T> reader) throws SpigotUnavailableException, InterruptedException {
+        if (!circuitBreaker.allowRequest()) {
+            throw new SpigotUnavailableException("SpigotMC circuit breaker is open");
+        }
+
+        long deadline = System.nanoTime() + deadlineNanos;
+        try {
+            if (!rateLimiter.acquire(deadline)) {
+                circuitBreaker.cancelRequest();
+                throw new SpigotUnavailableException("SpigotMC request budget exhausted");
+            }
+            return executeWithRetries(url, reader, deadline);
+        } catch (InterruptedException exception) {
+            // shutdown or a cancelled worker, not SpigotMC failing
+            circuitBreaker.cancelRequest();
+            throw exception;
+        } catch (RuntimeException exception) {
+            circuitBreaker.recordFailure();
+            throw exception;
+        }
+    }
+
+    private <T> @Nullable T executeWithRetries(@NotNull HttpUrl url, @NotNull ResponseReader<T> reader, long deadline) throws SpigotUnavailableException, InterruptedException {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64)")
+                .header("Cache-Control", "no-cache, no-store, must-revalidate")
+                .header("Pragma", "no-cache")
+                .header("Expires", "0")
+                .build();
+
+        for (int attempt = 0; ; attempt++) {
+            if (attempt > 0 && !rateLimiter.acquire(deadline)) {
+                circuitBreaker.recordFailure();
+                throw new SpigotUnavailableException("SpigotMC request budget exhausted while retrying");
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                circuitBreaker.recordFailure();
+                throw new SpigotUnavailableException("SpigotMC request deadline exceeded");
+            }
+
+            Call call = http.newCall(request);
+            call.timeout().timeout(remaining, TimeUnit.NANOSECONDS);
+            String failure;
+            long retryAfterMillis = -1;
+            try (Response response = call.execute()) {
+                int code = response.code();
+                // The simple API answers unknown authors with 404 and a JSON error body, which callers treat as "not found"
+                if (response.isSuccessful() || code == 404) {
+                    T result = read(response.body(), reader);
+                    circuitBreaker.recordSuccess();
+                    return result;
+                }
+                if (code != 429 && code < 500) {
+                    // SpigotMC answered, so the breaker stays closed, but the answer says nothing about the user
+                    circuitBreaker.recordSuccess();
+                    throw new SpigotUnavailableException("SpigotMC rejected the request: HTTP " + code);
+                }
+
+                failure = "HTTP " + code;
+                retryAfterMillis = parseRetryAfter(response.header("Retry-After"));
+            } catch (ResponseTooLargeException | JsonEncodingException | JsonDataException exception) {
+                // retrying would only download the same unusable body again
+                circuitBreaker.recordFailure();
+                throw new SpigotUnavailableException("Unusable SpigotMC response: " + exception.getMessage(), exception);
+            } catch (IOException exception) {
+                if (Thread.currentThread().isInterrupted()) {
+                    InterruptedException interrupted = new InterruptedException("Interrupted during a SpigotMC request");
+                    interrupted.initCause(exception);
+                    throw interrupted;
+                }
+                failure = exception.toString();
+            }
+
+            long delayMillis = Math.max(retryAfterMillis, backoff(attempt));
+            if (attempt >= maxRetries || System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis) >= deadline) {
+                circuitBreaker.recordFailure();
+                throw new SpigotUnavailableException("SpigotMC request failed after " + (attempt + 1) + " attempts: " + failure);
+            }
+
+            log.warn("SpigotMC request failed ({}), retrying in {} ms", failure, delayMillis);
+            TimeUnit.MILLISECONDS.sleep(delayMillis);
+        }
+    }
+
+    private <T> @Nullable T read(@Nullable ResponseBody body, @NotNull ResponseReader<T> reader) throws IOException {
+        if (body == null) return null;
+        if (body.contentLength() > maxResponseBytes) throw new ResponseTooLargeException(maxResponseBytes);
+
+        // closing hands the buffer's segments back to okio's pool even if the reader left trailing bytes
+        try (BufferedSource source = Okio.buffer(ResponseTooLargeException.limit(body.source(), maxResponseBytes))) {
+            return reader.read(source);
+        }
+    }
+
+    private static long backoff(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 16));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    private static long parseRetryAfter(@Nullable String header) {
+        if (header == null) return -1;
+
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(header.trim()));
+        } catch (NumberFormatException exception) {
+            return -1;
+        }
+    }
+
+    public record Settings(
+            @NotNull String baseUrl,
+            int requestsPerMinute,
+            int burst,
+            @NotNull Duration deadline,
+            int maxRetries,
+            int failureThreshold,
+            @NotNull Duration openDuration,
+            long maxResponseBytes
+    ) {
+    }
+}
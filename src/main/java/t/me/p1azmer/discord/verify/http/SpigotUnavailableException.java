@@ -0,0 +1,18 @@
+package t.me.p1azmer.discord.verify.http;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Thrown when the SpigotMC API could not give an answer: the circuit breaker is open,
+ * the rate limit or deadline ran out, or the server kept failing after retries.
+ */
+public class SpigotUnavailableException extends Exception {
+    public SpigotUnavailableException(@NotNull String message) {
+        super(message);
+    }
+
+    public SpigotUnavailableException(@NotNull String message, @Nullable Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,57 @@
+package t.me.p1azmer.discord.verify.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classic token bucket: refills at a fixed rate up to {@code capacity} tokens, one token per request.
+ */
+public class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(int requestsPerMinute, int burst) {
+        if (requestsPerMinute < 1) throw new IllegalArgumentException("requestsPerMinute must be positive: " + requestsPerMinute);
+        if (burst < 1) throw new IllegalArgumentException("burst must be positive: " + burst);
+
+        this.capacity = burst;
+        this.tokensPerNano = requestsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes one token, waiting for the bucket to refill if necessary.
+     *
+     * @param deadlineNanos {@link System#nanoTime()} value after which the caller gives up
+     * @return {@code false} if no token became available before the deadline
+     */
+    public boolean acquire(long deadlineNanos) throws InterruptedException {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return true;
+                }
+                waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+            }
+
+            if (System.nanoTime() + waitNanos > deadlineNanos) return false;
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    public synchronized double getAvailableTokens() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,142 @@
+package t.me.p1azmer.discord.verify.metrics;
+
+import lombok.experimental.UtilityClass;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Process-wide metric registry rendered in the Prometheus text exposition format.
+ * <p>
+ * Metrics are registered once, typically into static fields, and then updated directly; the registry itself
+ * is only touched on registration and on scrape.
+ */
+@UtilityClass
+public class Metrics {
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * @param labels alternating label names and values, e.g. {@code "command", "verify"}
+     */
+    public @NotNull Counter counter(@NotNull String name, @NotNull String help, @NotNull String... labels) {
+        return (Counter) register(name, help, Type.COUNTER, labels, new Counter(), false);
+    }
+
+    /**
+     * Registers a counter read at scrape time, for totals another component already keeps (e.g. cache statistics).
+     * The supplier must never decrease; like {@link #gauge}, registering again replaces it.
+     */
+    public void counter(@NotNull String name, @NotNull String help, @NotNull DoubleSupplier supplier, @NotNull String... labels) {
+        register(name, help, Type.COUNTER, labels, supplier, true);
+    }
+
+    public @NotNull Histogram histogram(@NotNull String name, @NotNull String help, @NotNull String... labels) {
+        return (Histogram) register(name, help, Type.HISTOGRAM, labels, new Histogram(), false);
+    }
+
+    /**
+     * Registers a gauge read at scrape time. Registering the same name and labels again replaces the supplier,
+     * so components that get rebuilt (e.g. on reload) can re-register themselves.
+     */
+    public void gauge(@NotNull String name, @NotNull String help, @NotNull DoubleSupplier supplier, @NotNull String... labels) {
+        register(name, help, Type.GAUGE, labels, supplier, true);
+    }
+
+    public @NotNull String scrape() {
+        StringBuilder output = new StringBuilder(4096);
+        synchronized (families) {
+            for (Family family : families.values()) {
+                family.write(output);
+            }
+        }
+        return output.toString();
+    }
+
+    private @NotNull Object register(@NotNull String name, @NotNull String help, @NotNull Type type,
+                                     @NotNull String[] labels, @NotNull Object metric, boolean replace) {
+        String labelText = formatLabels(labels);
+        synchronized (families) {
+            Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+            if (family.type != type) {
+                throw new IllegalArgumentException("Metric " + name + " is already registered as " + family.type);
+            }
+            if (replace) {
+                family.children.put(labelText, metric);
+                return metric;
+            }
+            return family.children.computeIfAbsent(labelText, key -> metric);
+        }
+    }
+
+    private @NotNull String formatLabels(@NotNull String[] labels) {
+        if (labels.length % 2 != 0) throw new IllegalArgumentException("Labels must be name/value pairs");
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) builder.append(',');
+            builder.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return builder.toString();
+    }
+
+    private enum Type {COUNTER, GAUGE, HISTOGRAM}
+
+    private static final class Family {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final Map<String, Object> children = new LinkedHashMap<>();
+
+        private Family(@NotNull String name, @NotNull String help, @NotNull Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        private void write(@NotNull StringBuilder output) {
+            output.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            output.append("# TYPE ").append(name).append(' ').append(type.name().toLowerCase()).append('\n');
+            for (Map.Entry<String, Object> child : children.entrySet()) {
+                String labels = child.getKey();
+                switch (type) {
+                    case COUNTER -> sample(output, name, labels, child.getValue() instanceof Counter counter
+                            ? counter.get() : ((DoubleSupplier) child.getValue()).getAsDouble());
+                    case GAUGE -> sample(output, name, labels, ((DoubleSupplier) child.getValue()).getAsDouble());
+                    case HISTOGRAM -> writeHistogram(output, labels, (Histogram) child.getValue());
+                }
+            }
+        }
+
+        private void writeHistogram(@NotNull StringBuilder output, @NotNull String labels, @NotNull Histogram histogram) {
+            String prefix = labels.isEmpty() ? "" : labels + ",";
+            long cumulative = 0;
+            for (int i = 0; i < Histogram.BUCKETS - 1; i++) {
+                cumulative += histogram.getBucketCount(i);
+                // only whole powers of two are exported to keep the scrape small; the finer sub-buckets still count towards them
+                if (i != 0 && i % Histogram.SUB_BUCKETS != 0) continue;
+                String le = Double.toString(Histogram.toSeconds(Histogram.upperBound(i)));
+                sample(output, name + "_bucket", prefix + "le=\"" + le + "\"", cumulative);
+            }
+            cumulative += histogram.getBucketCount(Histogram.BUCKETS - 1);
+            sample(output, name + "_bucket", prefix + "le=\"+Inf\"", cumulative);
+            sample(output, name + "_sum", labels, Histogram.toSeconds(histogram.getSumNanos()));
+            sample(output, name + "_count", labels, cumulative);
+        }
+
+        private static void sample(@NotNull StringBuilder output, @NotNull String name, @NotNull String labels, double value) {
+            output.append(name);
+            if (!labels.isEmpty()) output.append('{').append(labels).append('}');
+            output.append(' ');
+            if (value == Math.rint(value) && !Double.isInfinite(value)) {
+                output.append((long) value);
+            } else {
+                output.append(value);
+            }
+            output.append('\n');
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package t.me.p1azmer.discord.verify.models;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A verification started with {@code /verify} and waiting for {@code /done}.
+ *
+ * @param discordId  id of the Discord user who started it
+ * @param spigotName SpigotMC username with whitespace already stripped
+ * @param code       code the user has to put into their SpigotMC profile, whitespace already stripped
+ * @param createdAt  epoch millis of the {@code /verify} call; the TTL counts from here
+ * @param attempts   number of {@code /done} calls made for this code so far
+ */
+public record PendingVerification(long discordId, @NotNull String spigotName, @NotNull String code, long createdAt, int attempts) {
+
+    public static @NotNull PendingVerification create(long discordId, @NotNull String spigotName, @NotNull String code) {
+        return new PendingVerification(discordId, normalize(spigotName), normalize(code), System.currentTimeMillis(), 0);
+    }
+
+    public @NotNull PendingVerification withAttempt() {
+        return new PendingVerification(discordId, spigotName, code, createdAt, attempts + 1);
+    }
+
+    /**
+     * @return whether both come from the same {@code /verify} call, whatever their attempt counts
+     */
+    public boolean isSameVerification(@NotNull PendingVerification other) {
+        return discordId == other.discordId && createdAt == other.createdAt && code.equals(other.code);
+    }
+
+    public long expiresAt(long ttlMillis) {
+        return createdAt + ttlMillis;
+    }
+
+    /**
+     * Strips all whitespace, the form in which names and codes are stored and compared.
+     */
+    public static @NotNull String normalize(@NotNull String value) {
+        StringBuilder builder = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (builder == null) {
+                    builder = new StringBuilder(value.length());
+                    builder.append(value, 0, i);
+                }
+            } else if (builder != null) {
+                builder.append(c);
+            }
+        }
+        return builder == null ? value : builder.toString();
+    }
+}
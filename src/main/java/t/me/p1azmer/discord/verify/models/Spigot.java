@@ -1,65 +1,272 @@
 package t.me.p1azmer.discord.verify.models;
 
-import lombok.Cleanup;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.squareup.moshi.JsonReader;
 import lombok.experimental.UtilityClass;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
-import okhttp3.ResponseBody;
+import okhttp3.HttpUrl;
+import okio.BufferedSource;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.json.JSONObject;
+import t.me.p1azmer.discord.verify.http.CircuitBreaker;
+import t.me.p1azmer.discord.verify.http.ResponseReader;
+import t.me.p1azmer.discord.verify.http.SpigotHttpClient;
+import t.me.p1azmer.discord.verify.http.SpigotUnavailableException;
+import t.me.p1azmer.discord.verify.metrics.Counter;
+import t.me.p1azmer.discord.verify.metrics.Histogram;
+import t.me.p1azmer.discord.verify.metrics.Metrics;
 
-import java.util.Objects;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @UtilityClass
 public class Spigot {
-    private static final OkHttpClient CLIENT = new OkHttpClient();
+    public static final String DEFAULT_API_URL = "https://api.spigotmc.org/simple/0.2/index.php";
     public static final int INVALID_ID = -1;
+    private static final String NO_DISCORD = "";
+    private static final JsonReader.Options AUTHOR_FIELDS = JsonReader.Options.of("id", "identities");
+    private static final JsonReader.Options IDENTITY_FIELDS = JsonReader.Options.of("discord");
+    private static final ResponseReader<Integer> USER_ID_READER = Spigot::readUserId;
+    private static final ResponseReader<Author> AUTHOR_READER = Spigot::readAuthor;
+
+    // SpigotMC usernames map to a stable id, so hits are kept for a day and unknown names for a few minutes
+    private static final Cache<String, Integer> USER_IDS = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfter(new Expiry<String, Integer>() {
+                @Override
+                public long expireAfterCreate(@NotNull String key, @NotNull Integer value, long currentTime) {
+                    return value == INVALID_ID ? TimeUnit.MINUTES.toNanos(5) : TimeUnit.HOURS.toNanos(24);
+                }
+
+                @Override
+                public long expireAfterUpdate(@NotNull String key, @NotNull Integer value, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(@NotNull String key, @NotNull Integer value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+    // The Discord identity is what users are editing during verification, so it is only kept briefly
+    private static final Cache<Integer, String> IDENTITIES = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+    private static final Histogram FIND_AUTHOR_DURATION = requestDuration("findAuthor");
+    private static final Histogram GET_AUTHOR_DURATION = requestDuration("getAuthor");
+    private static final Counter FIND_AUTHOR_FAILURES = requestFailures("findAuthor");
+    private static final Counter GET_AUTHOR_FAILURES = requestFailures("getAuthor");
+    private static volatile SpigotHttpClient client = new SpigotHttpClient(new SpigotHttpClient.Settings(
+            DEFAULT_API_URL, 60, 5, Duration.ofSeconds(10), 3, 5, Duration.ofSeconds(30), 64 * 1024));
+
+    static {
+        registerMetrics();
+    }
+
+    public void configure(@NotNull SpigotHttpClient.Settings settings) {
+        client = new SpigotHttpClient(settings);
+    }
 
     public int fetchSpigotUserId(@NotNull String nickname) throws Exception {
-        String url = "https://api.spigotmc.org/simple/0.2/index.php?action=findAuthor&name=" + nickname
-                + "&t=" + System.currentTimeMillis();
-        String response = makeApiRequest(url);
-        if (response == null) return INVALID_ID;
+        String cacheKey = nickname.toLowerCase(Locale.ROOT);
+        Integer cached = USER_IDS.getIfPresent(cacheKey);
+        if (cached != null) return cached;
+
+        SpigotHttpClient client = Spigot.client;
+        HttpUrl url = client.getBaseUrl().newBuilder()
+                .addQueryParameter("action", "findAuthor")
+                .addQueryParameter("name", nickname)
+                .build();
+        Integer userId = timed(FIND_AUTHOR_DURATION, FIND_AUTHOR_FAILURES, "findAuthor:" + cacheKey, url, USER_ID_READER);
+        if (userId == null) return INVALID_ID;
 
-        JSONObject json = new JSONObject(response);
-        return json.has("id") ? json.getInt("id") : INVALID_ID;
+        USER_IDS.put(cacheKey, userId);
+        return userId;
     }
 
+    /**
+     * Returns the Discord identity from the short-lived cache without touching the API.
+     * Callers should fall back to {@link #fetchSpigotUserDiscord(int)} when the cached value does not match.
+     */
+    public @Nullable String getCachedSpigotUserDiscord(int userId) {
+        String cached = IDENTITIES.getIfPresent(userId);
+        return cached == null || cached.equals(NO_DISCORD) ? null : cached;
+    }
+
+    /**
+     * Always asks the API for the current Discord identity and refreshes the cache with the answer.
+     */
     public @Nullable String fetchSpigotUserDiscord(int userId) throws Exception {
         if (userId == INVALID_ID) return null;
 
-        String url = "https://api.spigotmc.org/simple/0.2/index.php?action=getAuthor&id=" + userId
-                + "&t=" + System.currentTimeMillis();
-        String response = makeApiRequest(url);
-        if (response == null) return null;
+        Author author = fetchAuthor(userId);
+        if (author == null) return null;
+
+        IDENTITIES.put(userId, author.discord() == null ? NO_DISCORD : author.discord());
+        return author.discord();
+    }
+
+    /**
+     * Like {@link #fetchSpigotUserDiscord} but tells a deleted account apart from one without a Discord identity.
+     */
+    public @NotNull Author checkSpigotUser(int userId) throws Exception {
+        Author author = fetchAuthor(userId);
+        // an empty answer says nothing about the account, so it must not count as deleted
+        if (author == null) throw new SpigotUnavailableException("getAuthor for " + userId + " returned no body");
+        if (!author.exists()) return author;
 
-        JSONObject json = new JSONObject(response);
-        return json.has("identities") && json.getJSONObject("identities").has("discord")
-                ? json.getJSONObject("identities").getString("discord")
-                : null;
+        IDENTITIES.put(userId, author.discord() == null ? NO_DISCORD : author.discord());
+        return author;
     }
 
-    public @Nullable String makeApiRequest(@NotNull String url) throws Exception {
-        Request request = new Request.Builder()
-                .url(url)
-                .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64)")
-                .header("Cache-Control", "no-cache, no-store, must-revalidate")
-                .header("Pragma", "no-cache")
-                .header("Expires", "0")
+    private @Nullable Author fetchAuthor(int userId) throws Exception {
+        SpigotHttpClient client = Spigot.client;
+        HttpUrl url = client.getBaseUrl().newBuilder()
+                .addQueryParameter("action", "getAuthor")
+                .addQueryParameter("id", Integer.toString(userId))
+                .addQueryParameter("t", Long.toString(System.currentTimeMillis()))
                 .build();
+        return timed(GET_AUTHOR_DURATION, GET_AUTHOR_FAILURES, "getAuthor:" + userId, url, AUTHOR_READER);
+    }
+
+    /**
+     * @return the {@code id} of a {@code findAuthor} response, or {@link #INVALID_ID} if it has none
+     */
+    public @NotNull Integer readUserId(@NotNull BufferedSource response) throws IOException {
+        return readAuthor(response).userId();
+    }
+
+    /**
+     * Reads the {@code id} and {@code identities.discord} of a {@code getAuthor} (or {@code findAuthor}) response,
+     * skipping every other field without materializing it.
+     */
+    public @NotNull Author readAuthor(@NotNull BufferedSource response) throws IOException {
+        JsonReader reader = JsonReader.of(response);
+        if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) return new Author(INVALID_ID, null);
+
+        int userId = INVALID_ID;
+        String discord = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.selectName(AUTHOR_FIELDS)) {
+                case 0 -> userId = readInt(reader);
+                case 1 -> discord = readDiscord(reader);
+                default -> {
+                    reader.skipName();
+                    reader.skipValue();
+                }
+            }
+        }
+        reader.endObject();
+        return new Author(userId, discord);
+    }
+
+    private int readInt(@NotNull JsonReader reader) throws IOException {
+        // the simple API sends ids as strings
+        if (reader.peek() == JsonReader.Token.NUMBER) return reader.nextInt();
+        if (reader.peek() != JsonReader.Token.STRING) {
+            reader.skipValue();
+            return INVALID_ID;
+        }
 
-        try (@Cleanup Response response = CLIENT.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                log.error("API request failed: HTTP {}", response.code());
-                return null;
+        try {
+            return Integer.parseInt(reader.nextString());
+        } catch (NumberFormatException exception) {
+            return INVALID_ID;
+        }
+    }
+
+    private @Nullable String readDiscord(@NotNull JsonReader reader) throws IOException {
+        // PHP serializes empty identities as [] rather than {}
+        if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+
+        String discord = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.selectName(IDENTITY_FIELDS) == 0 && reader.peek() == JsonReader.Token.STRING) {
+                discord = reader.nextString();
+            } else {
+                if (reader.peek() == JsonReader.Token.NAME) reader.skipName();
+                reader.skipValue();
             }
+        }
+        reader.endObject();
+        return discord;
+    }
+
+    /**
+     * @param userId  the account's id, or {@link #INVALID_ID} if SpigotMC does not know it
+     * @param discord its current Discord identity, or {@code null} if it has none
+     */
+    public record Author(int userId, @Nullable String discord) {
+        public boolean exists() {
+            return userId != INVALID_ID;
+        }
+    }
 
-            @Cleanup ResponseBody responseBody = response.body();
-            return Objects.requireNonNull(responseBody, "response body is null!").string();
+    private <T> @Nullable T timed(@NotNull Histogram duration, @NotNull Counter failures, @NotNull String key,
+                                  @NotNull HttpUrl url, @NotNull ResponseReader<T> reader) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return client.get(key, url, reader);
+        } catch (Exception exception) {
+            failures.increment();
+            throw exception;
+        } finally {
+            duration.recordSince(start);
         }
     }
+
+    private @NotNull Histogram requestDuration(@NotNull String action) {
+        return Metrics.histogram("bot_spigot_request_duration_seconds", "SpigotMC API request time including retries", "action", action);
+    }
+
+    private @NotNull Counter requestFailures(@NotNull String action) {
+        return Metrics.counter("bot_spigot_request_failures_total", "SpigotMC API requests that ended with an exception", "action", action);
+    }
+
+    private void registerMetrics() {
+        Metrics.gauge("bot_spigot_cache_size", "Entries in the SpigotMC lookup caches", () -> USER_IDS.estimatedSize(), "cache", "user_id");
+        Metrics.gauge("bot_spigot_cache_size", "Entries in the SpigotMC lookup caches", () -> IDENTITIES.estimatedSize(), "cache", "identity");
+        Metrics.counter("bot_spigot_cache_hits_total", "SpigotMC lookup cache hits", () -> USER_IDS.stats().hitCount(), "cache", "user_id");
+        Metrics.counter("bot_spigot_cache_hits_total", "SpigotMC lookup cache hits", () -> IDENTITIES.stats().hitCount(), "cache", "identity");
+        Metrics.counter("bot_spigot_cache_misses_total", "SpigotMC lookup cache misses", () -> USER_IDS.stats().missCount(), "cache", "user_id");
+        Metrics.counter("bot_spigot_cache_misses_total", "SpigotMC lookup cache misses", () -> IDENTITIES.stats().missCount(), "cache", "identity");
+        Metrics.counter("bot_spigot_cache_evictions_total", "SpigotMC lookup cache evictions", () -> USER_IDS.stats().evictionCount(), "cache", "user_id");
+        Metrics.counter("bot_spigot_cache_evictions_total", "SpigotMC lookup cache evictions", () -> IDENTITIES.stats().evictionCount(), "cache", "identity");
+        Metrics.gauge("bot_spigot_circuit_open", "1 while SpigotMC lookups fail fast",
+                () -> client.getCircuitBreaker().getState() == CircuitBreaker.State.CLOSED ? 0 : 1);
+        Metrics.gauge("bot_spigot_rate_limit_tokens", "Requests currently allowed by the SpigotMC rate limiter",
+                () -> client.getRateLimiter().getAvailableTokens());
+        Metrics.gauge("bot_spigot_coalesced_in_flight", "Distinct SpigotMC requests in flight", () -> client.getInFlightCount());
+    }
+
+    public @NotNull CacheStats getUserIdCacheStats() {
+        return USER_IDS.stats();
+    }
+
+    public @NotNull CacheStats getIdentityCacheStats() {
+        return IDENTITIES.stats();
+    }
+
+    public long getUserIdCacheSize() {
+        return USER_IDS.estimatedSize();
+    }
+
+    public long getIdentityCacheSize() {
+        return IDENTITIES.estimatedSize();
+    }
 }
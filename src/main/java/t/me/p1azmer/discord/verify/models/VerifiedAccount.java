@@ -0,0 +1,47 @@
+package t.me.p1azmer.discord.verify.models;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A Discord member whose SpigotMC account was verified, kept so the link can be re-checked later.
+ *
+ * @param guildId     guild the roles were assigned in
+ * @param discordId   id of the Discord user
+ * @param spigotId    id of the SpigotMC account
+ * @param identity    Discord identity the SpigotMC profile had when it was verified (the verification code)
+ * @param verifiedAt  epoch millis of the successful {@code /done}
+ * @param checkedAt   epoch millis of the last successful check, {@code verifiedAt} until the first re-check
+ * @param discordName Discord username at verification or the last check, also accepted as the profile's identity
+ */
+public record VerifiedAccount(long guildId, long discordId, int spigotId, @NotNull String identity,
+                              long verifiedAt, long checkedAt, @NotNull String discordName) {
+
+    public static @NotNull VerifiedAccount create(long guildId, long discordId, int spigotId, @NotNull String identity, @NotNull String discordName) {
+        long now = System.currentTimeMillis();
+        return new VerifiedAccount(guildId, discordId, spigotId, identity, now, now, discordName);
+    }
+
+    public @NotNull VerifiedAccount withCheckedAt(long checkedAt) {
+        return new VerifiedAccount(guildId, discordId, spigotId, identity, verifiedAt, checkedAt, discordName);
+    }
+
+    public @NotNull VerifiedAccount withDiscordName(@NotNull String discordName) {
+        return new VerifiedAccount(guildId, discordId, spigotId, identity, verifiedAt, checkedAt, discordName);
+    }
+
+    /**
+     * @param currentIdentity the Discord identity the SpigotMC profile has now, whitespace stripped
+     * @param currentNames    the member's names as Discord has them now (username, display name, nickname), any of
+     *                        which the profile may name instead of the username captured at verification
+     */
+    public boolean isLinkedTo(@NotNull String currentIdentity, @NotNull String... currentNames) {
+        if (currentIdentity.equals(identity) || currentIdentity.equalsIgnoreCase(discordName)
+                || currentIdentity.equals(Long.toUnsignedString(discordId))) {
+            return true;
+        }
+        for (String name : currentNames) {
+            if (name != null && currentIdentity.equalsIgnoreCase(PendingVerification.normalize(name))) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,129 @@
+package t.me.p1azmer.discord.verify.pipeline;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded worker pool that runs SpigotMC lookups off the JDA event thread.
+ * At most {@code maxInFlight} verifications run at once and at most {@code queueCapacity}
+ * wait behind them; anything beyond that is rejected so a burst cannot pile up unbounded.
+ */
+@Slf4j
+public class VerificationPipeline {
+    private final ThreadPoolExecutor executor;
+    @Getter
+    private final int maxInFlight;
+    private final int queueCapacity;
+
+    public VerificationPipeline(int maxInFlight, int queueCapacity) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+
+        this.maxInFlight = maxInFlight;
+        this.queueCapacity = queueCapacity;
+        this.executor = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new WorkerFactory(), new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues a verification task.
+     *
+     * @param onDropped run instead of {@code task} if {@link #shutdownNow()} drops it from the queue, so the user
+     *                  still gets an answer
+     * @return a future completed when the task finishes, or {@code null} if the pipeline is saturated or shut down
+     */
+    public @Nullable CompletableFuture<Void> submit(@NotNull Runnable task, @NotNull Runnable onDropped) {
+        Job job = new Job(task, onDropped, new CompletableFuture<>());
+        try {
+            executor.execute(job);
+            return job.future();
+        } catch (RejectedExecutionException exception) {
+            log.warn("Verification pipeline saturated (in-flight: {}/{}, queued: {}/{})",
+                    getInFlight(), maxInFlight, getQueueDepth(), queueCapacity);
+            return null;
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getInFlight() {
+        return executor.getActiveCount();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Stops taking new tasks and waits for the queued and running ones to finish.
+     *
+     * @return whether everything finished within {@code timeout}
+     */
+    public boolean drain(@NotNull Duration timeout) throws InterruptedException {
+        executor.shutdown();
+        return executor.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Interrupts the running tasks and drops the queued ones, running their {@code onDropped} callbacks on the
+     * calling thread.
+     *
+     * @return how many queued tasks will never run
+     */
+    public int shutdownNow() {
+        List<Runnable> dropped = executor.shutdownNow();
+        for (Runnable runnable : dropped) {
+            if (runnable instanceof Job job) job.drop();
+        }
+        return dropped.size();
+    }
+
+    private record Job(@NotNull Runnable task, @NotNull Runnable onDropped, @NotNull CompletableFuture<Void> future) implements Runnable {
+        @Override
+        public void run() {
+            try {
+                task.run();
+                future.complete(null);
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+                throw throwable;
+            }
+        }
+
+        void drop() {
+            try {
+                onDropped.run();
+            } catch (RuntimeException exception) {
+                log.warn("Failed to answer a verification dropped at shutdown", exception);
+            } finally {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private static final class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "Verification Worker #" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package t.me.p1azmer.discord.verify.reverify;
+
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+import org.jetbrains.annotations.NotNull;
+import t.me.p1azmer.discord.verify.config.Config;
+import t.me.p1azmer.discord.verify.config.GuildConfig;
+import t.me.p1azmer.discord.verify.http.SpigotUnavailableException;
+import t.me.p1azmer.discord.verify.metrics.Counter;
+import t.me.p1azmer.discord.verify.metrics.Metrics;
+import t.me.p1azmer.discord.verify.models.PendingVerification;
+import t.me.p1azmer.discord.verify.models.Spigot;
+import t.me.p1azmer.discord.verify.models.VerifiedAccount;
+import t.me.p1azmer.discord.verify.roles.RoleAssigner;
+import t.me.p1azmer.discord.verify.store.VerifiedAccountStore;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Re-checks verified members against SpigotMC in small batches spread evenly over the day, so the sweep never
+ * spends more than its daily request budget. Each check is recorded in the {@link VerifiedAccountStore}, which
+ * makes a restarted bot continue with the least recently checked accounts instead of starting over.
+ */
+@Slf4j
+public class ReverificationSweeper {
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final Counter VALID = result("valid");
+    private static final Counter UNLINKED = result("unlinked");
+    private static final Counter CHANGED = result("identity_changed");
+    private static final Counter UNRECOGNIZED = result("unrecognized");
+    private static final Counter MISSING = result("account_missing");
+
+    private final VerifiedAccountStore store;
+    private final RoleAssigner roleAssigner;
+    private final JDA jda;
+    private final BooleanSupplier active;
+    private final Settings settings;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param dailyBudget     SpigotMC requests the sweep may make per day
+     * @param batchSize       accounts checked per run; runs are spaced so {@code dailyBudget} is spread over the day
+     * @param recheckInterval how long a checked account is left alone
+     * @param removeRoles     whether roles are taken away when the account is gone or linked to someone else
+     */
+    public record Settings(int dailyBudget, int batchSize, @NotNull Duration recheckInterval, boolean removeRoles) {
+    }
+
+    /**
+     * @param active whether this process should sweep right now, e.g. only the leader replica
+     */
+    public ReverificationSweeper(@NotNull VerifiedAccountStore store, @NotNull RoleAssigner roleAssigner, @NotNull JDA jda,
+                                 @NotNull BooleanSupplier active, @NotNull Settings settings) {
+        this.store = store;
+        this.roleAssigner = roleAssigner;
+        this.jda = jda;
+        this.active = active;
+        this.settings = settings;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Reverification Sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        long periodMillis = Math.max(1000, settings.batchSize() * DAY_MILLIS / Math.max(1, settings.dailyBudget()));
+        scheduler.scheduleWithFixedDelay(this::sweepSafely, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        log.info("Re-verifying {} accounts every {} days, {} per {} s (at most {} SpigotMC requests a day)",
+                store.size(), settings.recheckInterval().toDays(), settings.batchSize(),
+                TimeUnit.MILLISECONDS.toSeconds(periodMillis), settings.dailyBudget());
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Checks the next batch of accounts that are due. Stops early while SpigotMC is unavailable; the unchecked
+     * accounts stay due for the next run.
+     */
+    public void sweep() {
+        if (!active.getAsBoolean()) return;
+
+        long checkedBefore = System.currentTimeMillis() - settings.recheckInterval().toMillis();
+        for (VerifiedAccount account : store.due(checkedBefore, settings.batchSize())) {
+            if (!check(account)) break;
+        }
+        store.compactIfNeeded();
+    }
+
+    private void sweepSafely() {
+        try {
+            sweep();
+        } catch (Exception exception) {
+            log.error("Re-verification sweep failed", exception);
+        }
+    }
+
+    private boolean check(@NotNull VerifiedAccount account) {
+        GuildConfig guild = Config.getSnapshot().guild(account.guildId());
+        if (guild == null) {
+            log.info("Guild {} is no longer configured, forgetting verified account of {}", account.guildId(), account.discordId());
+            store.remove(account.guildId(), account.discordId());
+            return true;
+        }
+
+        Spigot.Author result;
+        try {
+            result = Spigot.checkSpigotUser(account.spigotId());
+        } catch (SpigotUnavailableException exception) {
+            log.warn("SpigotMC unavailable, pausing re-verification: {}", exception.getMessage());
+            return false;
+        } catch (Exception exception) {
+            log.error("Failed to re-verify SpigotMC account {}", account.spigotId(), exception);
+            return false;
+        }
+
+        if (!result.exists()) {
+            invalid(account, guild, MISSING, "no longer exists");
+        } else if (result.discord() == null) {
+            // users often clear the field after verifying, which does not link the account to anyone else
+            UNLINKED.increment();
+            store.record(account.withCheckedAt(System.currentTimeMillis()));
+        } else if (account.isLinkedTo(PendingVerification.normalize(result.discord()))) {
+            VALID.increment();
+            store.record(account.withCheckedAt(System.currentTimeMillis()));
+        } else {
+            checkChangedIdentity(account, guild, result.discord());
+        }
+        return true;
+    }
+
+    /**
+     * The profile names neither the code nor the username captured at verification. That is only treated as a
+     * changed link when it names another member (or an existing Discord id); a renamed member or a display name
+     * in the field keeps the roles.
+     */
+    private void checkChangedIdentity(@NotNull VerifiedAccount account, @NotNull GuildConfig config, @NotNull String discord) {
+        Guild guild = jda.getGuildById(account.guildId());
+        if (guild == null) {
+            log.warn("Guild {} is not available, re-checking {} later", account.guildId(), account.discordId());
+            return;
+        }
+
+        Member member;
+        try {
+            member = guild.retrieveMemberById(account.discordId()).complete();
+        } catch (ErrorResponseException exception) {
+            if (exception.getErrorResponse() == ErrorResponse.UNKNOWN_MEMBER) {
+                store.remove(account.guildId(), account.discordId());
+            } else {
+                log.warn("Failed to look up {}, re-checking later", account.discordId(), exception);
+            }
+            return;
+        }
+
+        String identity = PendingVerification.normalize(discord);
+        User user = member.getUser();
+        if (account.isLinkedTo(identity, user.getName(), user.getGlobalName(), member.getNickname())) {
+            VALID.increment();
+            store.record(account.withDiscordName(user.getName()).withCheckedAt(System.currentTimeMillis()));
+        } else if (namesAnotherUser(guild, account, discord.trim(), identity)) {
+            invalid(account, config, CHANGED, "is now linked to '" + discord + "'");
+        } else {
+            UNRECOGNIZED.increment();
+            log.info("SpigotMC account {} of {} names '{}', which is no other member; keeping the roles",
+                    account.spigotId(), account.discordId(), discord);
+            store.record(account.withCheckedAt(System.currentTimeMillis()));
+        }
+    }
+
+    private boolean namesAnotherUser(@NotNull Guild guild, @NotNull VerifiedAccount account, @NotNull String discord, @NotNull String identity) {
+        if (isSnowflake(identity)) {
+            try {
+                return jda.retrieveUserById(identity).complete().getIdLong() != account.discordId();
+            } catch (ErrorResponseException exception) {
+                if (exception.getErrorResponse() == ErrorResponse.UNKNOWN_USER) return false;
+                throw exception;
+            }
+        }
+
+        if (discord.isEmpty()) return false;
+        // usernames are only searchable among this guild's members, so a user outside it never counts
+        for (Member other : guild.retrieveMembersByPrefix(discord, 10).get()) {
+            if (other.getIdLong() == account.discordId()) continue;
+            User user = other.getUser();
+            if (identity.equalsIgnoreCase(user.getName())
+                    || (user.getGlobalName() != null && identity.equalsIgnoreCase(PendingVerification.normalize(user.getGlobalName())))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSnowflake(@NotNull String value) {
+        if (value.length() < 17 || value.length() > 20) return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private void invalid(@NotNull VerifiedAccount account, @NotNull GuildConfig config, @NotNull Counter counter, @NotNull String reason) {
+        counter.increment();
+        log.warn("SpigotMC account {} verified by {} ({}) {}", account.spigotId(), account.discordName(), account.discordId(), reason);
+
+        Guild guild = settings.removeRoles() ? jda.getGuildById(account.guildId()) : null;
+        if (guild == null) {
+            store.record(account.withCheckedAt(System.currentTimeMillis()));
+            return;
+        }
+
+        guild.retrieveMemberById(account.discordId()).queue(
+                member -> {
+                    roleAssigner.revoke(guild, member, config);
+                    store.remove(account.guildId(), account.discordId());
+                },
+                failure -> {
+                    if (failure instanceof ErrorResponseException response && response.getErrorResponse() == ErrorResponse.UNKNOWN_MEMBER) {
+                        store.remove(account.guildId(), account.discordId());
+                    } else {
+                        log.warn("Failed to look up {} to remove their roles, retrying with the next sweep", account.discordId(), failure);
+                    }
+                });
+    }
+
+    private static @NotNull Counter result(@NotNull String result) {
+        return Metrics.counter("bot_reverifications_total", "Re-checked verified accounts by result", "result", result);
+    }
+}
@@ -0,0 +1,177 @@
+package t.me.p1azmer.discord.verify.roles;
+
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import org.jetbrains.annotations.NotNull;
+import t.me.p1azmer.discord.verify.config.GuildConfig;
+import t.me.p1azmer.discord.verify.metrics.Counter;
+import t.me.p1azmer.discord.verify.metrics.Histogram;
+import t.me.p1azmer.discord.verify.metrics.Metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gives a verified member the verify role and every {@code assign.roles} entry in one
+ * {@link Guild#modifyMemberRoles} request, so the assignment either fully succeeds or can be retried as a whole.
+ */
+@Slf4j
+public class RoleAssigner {
+    private static final Histogram ASSIGN_DURATION = Metrics.histogram("bot_role_assignment_duration_seconds",
+            "Time from a successful verification until Discord confirmed the roles, including retries");
+    private static final Counter ASSIGN_RETRIES = Metrics.counter("bot_role_assignment_retries_total", "Retried role assignment requests");
+    private static final Counter ASSIGN_FAILURES = Metrics.counter("bot_role_assignment_failures_total", "Role assignments that gave up");
+
+    private final int maxRetries;
+    private final long retryDelayMillis;
+    private final Map<Long, ResolvedRoles> resolved = new ConcurrentHashMap<>();
+    private final Object idle = new Object();
+    private int pending;
+
+    public RoleAssigner(int maxRetries, @NotNull Duration retryDelay) {
+        this.maxRetries = maxRetries;
+        this.retryDelayMillis = retryDelay.toMillis();
+    }
+
+    public void assign(@NotNull Guild guild, @NotNull Member member, @NotNull GuildConfig config) {
+        List<Role> roles = resolve(guild, config);
+        Set<Role> missing = new LinkedHashSet<>(roles);
+        member.getRoles().forEach(missing::remove);
+        if (missing.isEmpty()) {
+            log.info("{} already has every verification role", member.getUser().getName());
+            return;
+        }
+
+        started();
+        submit(guild, member, missing, 0, System.nanoTime());
+    }
+
+    /**
+     * Takes the verification roles away again, e.g. when the SpigotMC account no longer matches.
+     */
+    public void revoke(@NotNull Guild guild, @NotNull Member member, @NotNull GuildConfig config) {
+        List<Role> roles = new ArrayList<>(resolve(guild, config));
+        roles.retainAll(member.getRoles());
+        if (roles.isEmpty()) return;
+
+        started();
+        guild.modifyMemberRoles(member, null, roles).queue(
+                success -> {
+                    finished();
+                    log.info("Removed {} verification roles from {}", roles.size(), member.getUser().getName());
+                },
+                failure -> {
+                    finished();
+                    log.error("Failed to remove roles {} from {}", roles, member.getUser().getName(), failure);
+                });
+    }
+
+    /**
+     * Waits until every assignment and removal, including its retries, has either succeeded or given up.
+     *
+     * @return whether that happened within {@code timeout}
+     */
+    public boolean awaitIdle(@NotNull Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (idle) {
+            while (pending > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(idle, remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return role requests that are queued, in flight or waiting for a retry
+     */
+    public int getPending() {
+        synchronized (idle) {
+            return pending;
+        }
+    }
+
+    private void submit(@NotNull Guild guild, @NotNull Member member, @NotNull Set<Role> roles, int attempt, long startedAt) {
+        try {
+            guild.modifyMemberRoles(member, roles, null).queueAfter(attempt == 0 ? 0 : retryDelayMillis << (attempt - 1), TimeUnit.MILLISECONDS,
+                    success -> {
+                        finished();
+                        long latency = System.nanoTime() - startedAt;
+                        ASSIGN_DURATION.recordNanos(latency);
+                        log.info("Assigned {} roles to {} in {} ms", roles.size(), member.getUser().getName(),
+                                TimeUnit.NANOSECONDS.toMillis(latency));
+                    },
+                    failure -> {
+                        if (attempt < maxRetries && isRetryable(failure)) {
+                            ASSIGN_RETRIES.increment();
+                            log.warn("Failed to assign roles to {}, retrying ({}/{})", member.getUser().getName(), attempt + 1, maxRetries, failure);
+                            submit(guild, member, roles, attempt + 1, startedAt);
+                            return;
+                        }
+                        finished();
+                        ASSIGN_FAILURES.increment();
+                        log.error("Failed to assign roles {} to {}", roles, member.getUser().getName(), failure);
+                    });
+        } catch (RuntimeException exception) {
+            // JDA refuses new requests once it is shutting down
+            finished();
+            throw exception;
+        }
+    }
+
+    private void started() {
+        synchronized (idle) {
+            pending++;
+        }
+    }
+
+    private void finished() {
+        synchronized (idle) {
+            if (--pending == 0) idle.notifyAll();
+        }
+    }
+
+    private @NotNull List<Role> resolve(@NotNull Guild guild, @NotNull GuildConfig config) {
+        ResolvedRoles current = resolved.get(guild.getIdLong());
+        if (current != null && current.config() == config) {
+            return current.roles();
+        }
+
+        List<Long> roleIds = new ArrayList<>(config.assignRoleIds().size() + 1);
+        roleIds.add(config.verifyRoleId());
+        roleIds.addAll(config.assignRoleIds());
+
+        Set<Role> roles = new LinkedHashSet<>();
+        for (long roleId : roleIds) {
+            Role role = guild.getRoleById(roleId);
+            if (role == null) {
+                log.warn("Role with ID {} not found in guild", roleId);
+            } else if (!guild.getSelfMember().canInteract(role)) {
+                log.warn("Role {} is above the bot's highest role and cannot be assigned", role.getName());
+            } else {
+                roles.add(role);
+            }
+        }
+
+        List<Role> result = List.copyOf(roles);
+        resolved.put(guild.getIdLong(), new ResolvedRoles(config, result));
+        return result;
+    }
+
+    private static boolean isRetryable(@NotNull Throwable failure) {
+        return !(failure instanceof ErrorResponseException response) || response.isServerError();
+    }
+
+    private record ResolvedRoles(@NotNull GuildConfig config, @NotNull List<Role> roles) {
+    }
+}
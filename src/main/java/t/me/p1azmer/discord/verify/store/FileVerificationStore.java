@@ -0,0 +1,323 @@
+package t.me.p1azmer.discord.verify.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import t.me.p1azmer.discord.verify.metrics.Counter;
+import t.me.p1azmer.discord.verify.metrics.Metrics;
+import t.me.p1azmer.discord.verify.models.PendingVerification;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pending verifications kept in memory and mirrored to an append-only log, so they survive restarts.
+ * <p>
+ * Every change is appended as one record and handed to the OS immediately, which keeps writes well
+ * under a millisecond while surviving a process or container restart. The log is rewritten from the
+ * live entries periodically so it does not grow without bound. A torn record at the end of the log
+ * (crash mid-write) is discarded on load.
+ */
+@Slf4j
+public class FileVerificationStore implements VerificationStore {
+    private static final Counter EXPIRED = Metrics.counter("bot_verification_codes_expired_total", "Verification codes that expired without a successful /done");
+    private static final int MAGIC = 0x53564C47; // "SVLG"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = Integer.BYTES + Byte.BYTES;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final long ttlMillis;
+    private final Map<Long, PendingVerification> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService compactor;
+    private FileOutputStream fileOutput;
+    private DataOutputStream output;
+    private long records;
+
+    public FileVerificationStore(@NotNull Path file, @NotNull Duration ttl, @NotNull Duration compactionInterval) throws IOException {
+        this.file = file;
+        this.ttlMillis = ttl.toMillis();
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+
+        long start = System.nanoTime();
+        long validLength = load();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (channel.size() > validLength) {
+                log.warn("Discarding {} bytes of incomplete records at the end of {}", channel.size() - validLength, file);
+                channel.truncate(validLength);
+            }
+        }
+        openOutput();
+        log.info("Loaded {} pending verifications from {} in {} ms", entries.size(), file,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Verification Store Compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = compactionInterval.toMillis();
+        this.compactor.scheduleWithFixedDelay(this::compactSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void put(@NotNull PendingVerification verification) {
+        synchronized (this) {
+            append(output -> writePut(output, verification));
+            entries.put(verification.discordId(), verification);
+        }
+    }
+
+    @Override
+    public @Nullable PendingVerification get(long discordId) {
+        PendingVerification verification = entries.get(discordId);
+        if (verification == null) return null;
+        if (isExpired(verification, System.currentTimeMillis())) {
+            if (entries.remove(discordId, verification)) EXPIRED.increment();
+            return null;
+        }
+        return verification;
+    }
+
+    @Override
+    public void remove(long discordId) {
+        synchronized (this) {
+            if (entries.remove(discordId) == null) return;
+            append(output -> {
+                output.writeByte(OP_REMOVE);
+                output.writeLong(discordId);
+            });
+        }
+    }
+
+    @Override
+    public boolean complete(@NotNull PendingVerification verification) {
+        synchronized (this) {
+            PendingVerification current = get(verification.discordId());
+            if (current == null || !current.isSameVerification(verification)) return false;
+            remove(verification.discordId());
+            return true;
+        }
+    }
+
+    @Override
+    public boolean recordAttempt(@NotNull PendingVerification verification) {
+        synchronized (this) {
+            PendingVerification current = get(verification.discordId());
+            if (current == null || !current.isSameVerification(verification)) return false;
+            put(current.withAttempt());
+            return true;
+        }
+    }
+
+    @Override
+    public boolean isCodePending(@NotNull String code) {
+        long now = System.currentTimeMillis();
+        for (PendingVerification verification : entries.values()) {
+            if (verification.code().equals(code) && !isExpired(verification, now)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            output.flush();
+            fileOutput.getChannel().force(false);
+        } catch (IOException exception) {
+            log.error("Failed to flush {}", file, exception);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        compactor.shutdownNow();
+        flush();
+        try {
+            output.close();
+        } catch (IOException exception) {
+            log.error("Failed to close {}", file, exception);
+        }
+    }
+
+    /**
+     * Rewrites the log so it only contains live, unexpired entries. The current log stays open until the rewritten
+     * one has replaced it, so a failed compaction leaves the store writing where it was.
+     */
+    public synchronized void compact() throws IOException {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(verification -> {
+            if (!isExpired(verification, now)) return false;
+            EXPIRED.increment();
+            return true;
+        });
+
+        long before = records;
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        FileOutputStream compactedFile = new FileOutputStream(temp.toFile());
+        DataOutputStream compacted = new DataOutputStream(new BufferedOutputStream(compactedFile, BUFFER_SIZE));
+        try {
+            writeHeader(compacted);
+            for (PendingVerification verification : entries.values()) {
+                writePut(compacted, verification);
+            }
+            compacted.flush();
+            // the open stream follows the file through the rename, so it keeps appending to the new log
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException exception) {
+            closeQuietly(compacted);
+            Files.deleteIfExists(temp);
+            throw exception;
+        }
+
+        closeQuietly(output);
+        fileOutput = compactedFile;
+        output = compacted;
+        records = entries.size();
+        log.debug("Compacted {} from {} to {} records", file, before, records);
+    }
+
+    private void compactSafely() {
+        try {
+            compact();
+        } catch (Exception exception) {
+            log.error("Failed to compact {}", file, exception);
+        }
+    }
+
+    private void closeQuietly(@NotNull DataOutputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException exception) {
+            log.warn("Failed to close a stream of {}", file, exception);
+        }
+    }
+
+    private long load() throws IOException {
+        if (!Files.exists(file)) return 0;
+
+        long now = System.currentTimeMillis();
+        long validLength = 0;
+        byte[] content = Files.readAllBytes(file);
+        if (content.length == 0) return 0;
+
+        ByteArrayInputStream bytes = new ByteArrayInputStream(content);
+        try (DataInputStream input = new DataInputStream(bytes)) {
+            if (content.length < HEADER_SIZE || input.readInt() != MAGIC || input.readByte() != VERSION) {
+                log.warn("{} is not a verification log of version {}, starting with an empty store", file, VERSION);
+                Files.move(file, file.resolveSibling(file.getFileName() + ".unsupported"), StandardCopyOption.REPLACE_EXISTING);
+                return 0;
+            }
+            validLength = HEADER_SIZE;
+
+            while (true) {
+                byte op;
+                try {
+                    op = input.readByte();
+                } catch (EOFException end) {
+                    break;
+                }
+
+                try {
+                    if (op == OP_PUT) {
+                        PendingVerification verification = readPut(input);
+                        if (isExpired(verification, now)) {
+                            entries.remove(verification.discordId());
+                        } else {
+                            entries.put(verification.discordId(), verification);
+                        }
+                    } else if (op == OP_REMOVE) {
+                        entries.remove(input.readLong());
+                    } else {
+                        log.warn("Unknown record type {} in {}, ignoring the rest of the file", op, file);
+                        break;
+                    }
+                } catch (EOFException | UTFDataFormatException truncated) {
+                    break;
+                }
+                records++;
+                validLength = content.length - bytes.available();
+            }
+        }
+        return validLength;
+    }
+
+    private void openOutput() throws IOException {
+        boolean empty = !Files.exists(file) || Files.size(file) == 0;
+        fileOutput = new FileOutputStream(file.toFile(), true);
+        output = new DataOutputStream(new BufferedOutputStream(fileOutput, BUFFER_SIZE));
+        if (empty) {
+            writeHeader(output);
+            output.flush();
+        }
+    }
+
+    private boolean isExpired(@NotNull PendingVerification verification, long now) {
+        return verification.expiresAt(ttlMillis) <= now;
+    }
+
+    private static void writeHeader(@NotNull DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+    }
+
+    private static void writePut(@NotNull DataOutputStream output, @NotNull PendingVerification verification) throws IOException {
+        output.writeByte(OP_PUT);
+        output.writeLong(verification.discordId());
+        output.writeUTF(verification.spigotName());
+        output.writeUTF(verification.code());
+        output.writeLong(verification.createdAt());
+        output.writeInt(verification.attempts());
+    }
+
+    private static @NotNull PendingVerification readPut(@NotNull DataInputStream input) throws IOException {
+        long discordId = input.readLong();
+        String spigotName = input.readUTF();
+        String code = input.readUTF();
+        long createdAt = input.readLong();
+        int attempts = input.readInt();
+        return new PendingVerification(discordId, spigotName, code, createdAt, attempts);
+    }
+
+    private void append(@NotNull RecordWriter writer) {
+        try {
+            writer.write(output);
+            output.flush();
+            records++;
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Failed to append to " + file, exception);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(@NotNull DataOutputStream output) throws IOException;
+    }
+}
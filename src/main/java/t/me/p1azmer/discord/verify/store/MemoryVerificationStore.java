@@ -0,0 +1,96 @@
+package t.me.p1azmer.discord.verify.store;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import t.me.p1azmer.discord.verify.metrics.Counter;
+import t.me.p1azmer.discord.verify.metrics.Metrics;
+import t.me.p1azmer.discord.verify.models.PendingVerification;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps pending verifications in process memory only; everything is lost on restart.
+ */
+public class MemoryVerificationStore implements VerificationStore {
+    private static final Counter EXPIRED = Metrics.counter("bot_verification_codes_expired_total", "Verification codes that expired without a successful /done");
+    private final Cache<Long, PendingVerification> codes;
+
+    public MemoryVerificationStore(@NotNull Duration ttl) {
+        long ttlMillis = ttl.toMillis();
+        this.codes = Caffeine.newBuilder()
+                .expireAfter(new Expiry<Long, PendingVerification>() {
+                    @Override
+                    public long expireAfterCreate(@NotNull Long key, @NotNull PendingVerification value, long currentTime) {
+                        long remaining = value.expiresAt(ttlMillis) - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remaining));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(@NotNull Long key, @NotNull PendingVerification value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(@NotNull Long key, @NotNull PendingVerification value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .removalListener((Long key, PendingVerification value, RemovalCause cause) -> {
+                    if (cause == RemovalCause.EXPIRED) EXPIRED.increment();
+                })
+                .build();
+    }
+
+    @Override
+    public void put(@NotNull PendingVerification verification) {
+        codes.put(verification.discordId(), verification);
+    }
+
+    @Override
+    public @Nullable PendingVerification get(long discordId) {
+        return codes.getIfPresent(discordId);
+    }
+
+    @Override
+    public void remove(long discordId) {
+        codes.invalidate(discordId);
+    }
+
+    @Override
+    public boolean complete(@NotNull PendingVerification verification) {
+        PendingVerification current = codes.getIfPresent(verification.discordId());
+        return current != null && current.isSameVerification(verification) && codes.asMap().remove(verification.discordId(), current);
+    }
+
+    @Override
+    public boolean recordAttempt(@NotNull PendingVerification verification) {
+        while (true) {
+            PendingVerification current = codes.getIfPresent(verification.discordId());
+            if (current == null || !current.isSameVerification(verification)) return false;
+            if (codes.asMap().replace(verification.discordId(), current, current.withAttempt())) return true;
+        }
+    }
+
+    @Override
+    public boolean isCodePending(@NotNull String code) {
+        for (PendingVerification verification : codes.asMap().values()) {
+            if (verification.code().equals(code)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return codes.estimatedSize();
+    }
+
+    @Override
+    public void close() {
+        codes.invalidateAll();
+    }
+}
@@ -0,0 +1,124 @@
+package t.me.p1azmer.discord.verify.store;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.UnifiedJedis;
+import t.me.p1azmer.discord.verify.models.PendingVerification;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps pending verifications in Redis (or anything speaking its protocol), so every bot replica sees the same state.
+ * <p>
+ * Each verification is a hash expiring with its TTL, plus a key per code for {@link #isCodePending} and a sorted set
+ * of expiry times for {@link #size}. Changes touching more than one key run as Lua scripts, so they are atomic and
+ * take one round-trip; reads are a single command. The connection pool is shared and not closed by this store.
+ */
+public class RedisVerificationStore implements VerificationStore {
+    private static final String PUT_SCRIPT = """
+            local old = redis.call('HGET', KEYS[1], 'c')
+            if old and old ~= ARGV[2] then redis.call('DEL', ARGV[7] .. old) end
+            redis.call('HSET', KEYS[1], 'n', ARGV[1], 'c', ARGV[2], 't', ARGV[3], 'a', ARGV[4])
+            redis.call('PEXPIREAT', KEYS[1], ARGV[5])
+            redis.call('SET', KEYS[2], ARGV[6])
+            redis.call('PEXPIREAT', KEYS[2], ARGV[5])
+            redis.call('ZADD', KEYS[3], ARGV[5], ARGV[6])
+            """;
+    private static final String REMOVE_SCRIPT = """
+            local old = redis.call('HGET', KEYS[1], 'c')
+            if old then redis.call('DEL', ARGV[1] .. old) end
+            redis.call('DEL', KEYS[1])
+            redis.call('ZREM', KEYS[2], ARGV[2])
+            """;
+    private static final String COMPLETE_SCRIPT = """
+            local current = redis.call('HMGET', KEYS[1], 'c', 't')
+            if current[1] ~= ARGV[1] or current[2] ~= ARGV[2] then return 0 end
+            redis.call('DEL', KEYS[1], ARGV[3] .. ARGV[1])
+            redis.call('ZREM', KEYS[2], ARGV[4])
+            return 1
+            """;
+    private static final String ATTEMPT_SCRIPT = """
+            local current = redis.call('HMGET', KEYS[1], 'c', 't')
+            if current[1] ~= ARGV[1] or current[2] ~= ARGV[2] then return 0 end
+            redis.call('HINCRBY', KEYS[1], 'a', 1)
+            return 1
+            """;
+    private static final String SIZE_SCRIPT = """
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', ARGV[1])
+            return redis.call('ZCARD', KEYS[1])
+            """;
+
+    private final UnifiedJedis redis;
+    private final String pendingPrefix;
+    private final String codePrefix;
+    private final String indexKey;
+    private final long ttlMillis;
+
+    /**
+     * @param namespace prefix of every key this store uses, e.g. {@code verify:<guild id>}
+     */
+    public RedisVerificationStore(@NotNull UnifiedJedis redis, @NotNull String namespace, @NotNull Duration ttl) {
+        this.redis = redis;
+        this.pendingPrefix = namespace + ":pending:";
+        this.codePrefix = namespace + ":code:";
+        this.indexKey = namespace + ":pending";
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    @Override
+    public void put(@NotNull PendingVerification verification) {
+        String discordId = Long.toString(verification.discordId());
+        redis.eval(PUT_SCRIPT,
+                List.of(pendingPrefix + discordId, codePrefix + verification.code(), indexKey),
+                List.of(verification.spigotName(), verification.code(), Long.toString(verification.createdAt()),
+                        Integer.toString(verification.attempts()), Long.toString(verification.expiresAt(ttlMillis)),
+                        discordId, codePrefix));
+    }
+
+    @Override
+    public @Nullable PendingVerification get(long discordId) {
+        Map<String, String> fields = redis.hgetAll(pendingPrefix + discordId);
+        if (fields.isEmpty()) return null;
+
+        return new PendingVerification(discordId, fields.get("n"), fields.get("c"),
+                Long.parseLong(fields.get("t")), Integer.parseInt(fields.get("a")));
+    }
+
+    @Override
+    public void remove(long discordId) {
+        redis.eval(REMOVE_SCRIPT, List.of(pendingPrefix + discordId, indexKey), List.of(codePrefix, Long.toString(discordId)));
+    }
+
+    @Override
+    public boolean complete(@NotNull PendingVerification verification) {
+        Object removed = redis.eval(COMPLETE_SCRIPT,
+                List.of(pendingPrefix + verification.discordId(), indexKey),
+                List.of(verification.code(), Long.toString(verification.createdAt()), codePrefix, Long.toString(verification.discordId())));
+        return Long.valueOf(1).equals(removed);
+    }
+
+    @Override
+    public boolean recordAttempt(@NotNull PendingVerification verification) {
+        Object recorded = redis.eval(ATTEMPT_SCRIPT, List.of(pendingPrefix + verification.discordId()),
+                List.of(verification.code(), Long.toString(verification.createdAt())));
+        return Long.valueOf(1).equals(recorded);
+    }
+
+    @Override
+    public boolean isCodePending(@NotNull String code) {
+        return redis.exists(codePrefix + code);
+    }
+
+    @Override
+    public long size() {
+        Object size = redis.eval(SIZE_SCRIPT, List.of(indexKey), List.of(Long.toString(System.currentTimeMillis())));
+        return size instanceof Long count ? count : 0;
+    }
+
+    @Override
+    public void close() {
+        // the pool is shared by every guild's store and closed by its owner
+    }
+}
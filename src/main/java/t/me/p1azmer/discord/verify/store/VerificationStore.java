@@ -0,0 +1,55 @@
+package t.me.p1azmer.discord.verify.store;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import t.me.p1azmer.discord.verify.models.PendingVerification;
+
+/**
+ * Holds verifications started by {@code /verify} until {@code /done} confirms them or they expire.
+ */
+public interface VerificationStore extends AutoCloseable {
+
+    /**
+     * Stores the verification under its Discord id, replacing any previous one.
+     */
+    void put(@NotNull PendingVerification verification);
+
+    /**
+     * @return the pending verification, or {@code null} if there is none or it has expired
+     */
+    @Nullable PendingVerification get(long discordId);
+
+    void remove(long discordId);
+
+    /**
+     * Atomically removes the verification if it is still the one that was checked, so only one {@code /done}
+     * (on any replica) can complete it.
+     *
+     * @return {@code false} if it was completed, replaced by a new {@code /verify} or expired in the meantime
+     */
+    boolean complete(@NotNull PendingVerification verification);
+
+    /**
+     * Atomically counts one more {@code /done} attempt against the verification, if it is still the one that was checked.
+     *
+     * @return {@code false} if it was completed, replaced by a new {@code /verify} or expired in the meantime
+     */
+    boolean recordAttempt(@NotNull PendingVerification verification);
+
+    /**
+     * @param code a normalized code, as stored in {@link PendingVerification#code()}
+     * @return whether any unexpired verification currently uses this code
+     */
+    boolean isCodePending(@NotNull String code);
+
+    long size();
+
+    /**
+     * Makes every write so far durable. No-op for stores that are not persistent.
+     */
+    default void flush() {
+    }
+
+    @Override
+    void close();
+}
@@ -0,0 +1,152 @@
+package t.me.p1azmer.discord.verify.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import t.me.p1azmer.discord.verify.models.VerifiedAccount;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Verified accounts mirrored to an append-only text log, one tab-separated record per line.
+ * Re-checks append the updated record, which is what lets the re-verification sweeper resume where it stopped;
+ * the log is rewritten from the live entries once most of its lines are outdated.
+ */
+@Slf4j
+public class VerifiedAccountStore implements AutoCloseable {
+    private static final String PUT = "+";
+    private static final String REMOVE = "-";
+
+    private final Path file;
+    private final Map<Key, VerifiedAccount> accounts = new ConcurrentHashMap<>();
+    private BufferedWriter writer;
+    private long records;
+
+    public VerifiedAccountStore(@NotNull Path file) throws IOException {
+        this.file = file;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+
+        load();
+        compact();
+        log.info("Loaded {} verified accounts from {}", accounts.size(), file);
+    }
+
+    public void record(@NotNull VerifiedAccount account) {
+        synchronized (this) {
+            append(format(account));
+            accounts.put(new Key(account.guildId(), account.discordId()), account);
+        }
+    }
+
+    public void remove(long guildId, long discordId) {
+        synchronized (this) {
+            if (accounts.remove(new Key(guildId, discordId)) == null) return;
+            append(REMOVE + '\t' + guildId + '\t' + discordId);
+        }
+    }
+
+    /**
+     * @return up to {@code limit} accounts last checked before {@code checkedBefore}, least recently checked first
+     */
+    public @NotNull List<VerifiedAccount> due(long checkedBefore, int limit) {
+        List<VerifiedAccount> due = new ArrayList<>();
+        for (VerifiedAccount account : accounts.values()) {
+            if (account.checkedAt() < checkedBefore) due.add(account);
+        }
+        due.sort(Comparator.comparingLong(VerifiedAccount::checkedAt));
+        return due.size() > limit ? new ArrayList<>(due.subList(0, limit)) : due;
+    }
+
+    public int size() {
+        return accounts.size();
+    }
+
+    /**
+     * Rewrites the log once it holds more than twice as many records as there are accounts.
+     */
+    public synchronized void compactIfNeeded() {
+        if (records <= Math.max(64, accounts.size() * 2L)) return;
+        try {
+            compact();
+        } catch (IOException exception) {
+            log.error("Failed to compact {}", file, exception);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException exception) {
+            log.error("Failed to close {}", file, exception);
+        }
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) return;
+
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\t", 8);
+            try {
+                if (fields[0].equals(PUT) && fields.length == 8) {
+                    VerifiedAccount account = new VerifiedAccount(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                            Integer.parseInt(fields[3]), fields[6], Long.parseLong(fields[4]), Long.parseLong(fields[5]), fields[7]);
+                    accounts.put(new Key(account.guildId(), account.discordId()), account);
+                } else if (fields[0].equals(REMOVE) && fields.length == 3) {
+                    accounts.remove(new Key(Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+                } else {
+                    // most likely a line torn by a crash mid-write; compaction drops it
+                    log.warn("Skipping malformed line in {}: {}", file, line);
+                }
+            } catch (NumberFormatException exception) {
+                log.warn("Skipping malformed line in {}: {}", file, line);
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        if (writer != null) writer.close();
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter compacted = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (VerifiedAccount account : accounts.values()) {
+                compacted.write(format(account));
+                compacted.newLine();
+            }
+        }
+        records = accounts.size();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static @NotNull String format(@NotNull VerifiedAccount account) {
+        return PUT + '\t' + account.guildId() + '\t' + account.discordId() + '\t' + account.spigotId() + '\t'
+                + account.verifiedAt() + '\t' + account.checkedAt() + '\t' + account.identity() + '\t' + account.discordName();
+    }
+
+    private void append(@NotNull String line) {
+        try {
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+            records++;
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Failed to append to " + file, exception);
+        }
+    }
+
+    private record Key(long guildId, long discordId) {
+    }
+}
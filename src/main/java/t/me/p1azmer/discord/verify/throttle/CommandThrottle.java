@@ -0,0 +1,89 @@
+package t.me.p1azmer.discord.verify.throttle;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-user rate limit for one command: at most {@code limit} uses in any sliding {@code window}.
+ * <p>
+ * The sliding window is approximated from the counts of the current and the previous fixed window, the
+ * previous one weighted by how much of it the sliding window still covers. Both counts and the window number
+ * are packed into one {@link AtomicLong} per user and updated with a CAS, so checks never lock. Users who
+ * stay idle for two windows are dropped.
+ */
+public class CommandThrottle {
+    private static final int COUNT_BITS = 16;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final int limit;
+    private final long windowNanos;
+    private final LongSupplier clock;
+    private final long origin;
+    private final Cache<Long, AtomicLong> users;
+
+    public CommandThrottle(int limit, @NotNull Duration window) {
+        this(limit, window, System::nanoTime);
+    }
+
+    /**
+     * @param clock nanosecond time source, {@link System#nanoTime()} outside of tests
+     */
+    CommandThrottle(int limit, @NotNull Duration window, @NotNull LongSupplier clock) {
+        if (limit < 1 || limit > COUNT_MASK) throw new IllegalArgumentException("limit must be between 1 and " + COUNT_MASK + ": " + limit);
+        if (window.isZero() || window.isNegative()) throw new IllegalArgumentException("window must be positive: " + window);
+
+        this.limit = limit;
+        this.windowNanos = window.toNanos();
+        this.clock = clock;
+        this.origin = clock.getAsLong();
+        this.users = Caffeine.newBuilder()
+                .expireAfterAccess(window.multipliedBy(2))
+                .ticker(clock::getAsLong)
+                .build();
+    }
+
+    /**
+     * Counts one use by {@code userId} if it is within the limit.
+     *
+     * @return {@code 0} if the use was allowed, otherwise how many nanoseconds until it would be
+     */
+    public long tryAcquire(long userId) {
+        AtomicLong state = users.get(userId, id -> new AtomicLong());
+        long elapsed = clock.getAsLong() - origin;
+        long window = elapsed / windowNanos;
+        double fraction = (elapsed % windowNanos) / (double) windowNanos;
+
+        while (true) {
+            long current = state.get();
+            long stateWindow = current >>> (2 * COUNT_BITS);
+            long previous = (current >>> COUNT_BITS) & COUNT_MASK;
+            long count = current & COUNT_MASK;
+            if (stateWindow != window) {
+                previous = stateWindow == window - 1 ? count : 0;
+                count = 0;
+            }
+
+            if (previous * (1 - fraction) + count + 1 > limit) return retryAfter(previous, count, fraction);
+
+            long next = (window << (2 * COUNT_BITS)) | (previous << COUNT_BITS) | (count + 1);
+            if (state.compareAndSet(current, next)) return 0;
+        }
+    }
+
+    private long retryAfter(long previous, long count, double fraction) {
+        double waitWindows;
+        if (count + 1 <= limit) {
+            // the rest of the previous window has to slide out far enough
+            waitWindows = 1 - (limit - 1 - count) / (double) previous - fraction;
+        } else {
+            // this window is full on its own; it becomes the previous window and has to slide out
+            waitWindows = 1 - fraction + 1 - (limit - 1) / (double) count;
+        }
+        return Math.max(1, (long) Math.ceil(waitWindows * windowNanos));
+    }
+}
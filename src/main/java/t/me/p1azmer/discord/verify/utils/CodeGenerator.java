@@ -0,0 +1,44 @@
+package t.me.p1azmer.discord.verify.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates random verification codes of a fixed length over a fixed alphabet.
+ * Randomness comes from the calling thread's {@link ThreadLocalRandom}, so it is safe to share between JDA threads.
+ */
+public final class CodeGenerator {
+    public static final String DIGITS = "0123456789";
+    public static final int DEFAULT_LENGTH = 6;
+
+    private final char[] alphabet;
+    private final int length;
+
+    public CodeGenerator(int length, @NotNull String alphabet) {
+        if (length < 1) throw new IllegalArgumentException("Code length must be positive: " + length);
+        if (alphabet.chars().distinct().count() != alphabet.length() || alphabet.length() < 2) {
+            throw new IllegalArgumentException("Code alphabet must contain at least two distinct characters and no duplicates: " + alphabet);
+        }
+
+        this.alphabet = alphabet.toCharArray();
+        this.length = length;
+    }
+
+    public @NotNull String next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] code = new char[length];
+        for (int i = 0; i < length; i++) {
+            code[i] = alphabet[random.nextInt(alphabet.length)];
+        }
+        return new String(code);
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public @NotNull String getAlphabet() {
+        return new String(alphabet);
+    }
+}
@@ -0,0 +1,69 @@
+package t.me.p1azmer.discord.verify.config;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConfigSnapshotTest {
+
+    @Test
+    void acceptsACompleteLegacyGuild() {
+        assertEquals(List.of(), parse("""
+                guild: {id: "1"}
+                channel: {id: "2"}
+                verify: {role: {id: "3"}}
+                """).invalidGuildSettings());
+    }
+
+    @Test
+    void guildSectionsFallBackToTopLevelIds() {
+        assertEquals(List.of(), parse("""
+                channel: {id: "2"}
+                verify: {role: {id: "3"}}
+                guilds:
+                  10: {channel: {id: "20"}}
+                """).invalidGuildSettings());
+    }
+
+    @Test
+    void rejectsAConfigWithoutGuilds() {
+        assertEquals(List.of("guild.id"), parse("""
+                channel: {id: "2"}
+                verify: {role: {id: "3"}}
+                """).invalidGuildSettings());
+    }
+
+    @Test
+    void rejectsIdsThatAreNotDiscordIds() {
+        assertEquals(List.of("guild.id", "guilds.main"), parse("""
+                guild: {id: "my server"}
+                channel: {id: "2"}
+                verify: {role: {id: "3"}}
+                guilds:
+                  main: {channel: {id: "20"}}
+                """).invalidGuildSettings());
+    }
+
+    @Test
+    void rejectsGuildsWithoutChannelOrVerifyRole() {
+        assertEquals(List.of("channel.id", "verify.role.id"), parse("""
+                guild: {id: "1"}
+                channel: {id: "not a number"}
+                """).invalidGuildSettings());
+        assertEquals(List.of("guilds.10.verify.role.id"), parse("""
+                channel: {id: "2"}
+                guilds:
+                  10: {channel: {id: "20"}}
+                """).invalidGuildSettings());
+    }
+
+    private static @NotNull ConfigSnapshot parse(@NotNull String yaml) {
+        Map<String, Object> root = new Yaml().load(yaml);
+        return ConfigSnapshot.from(root);
+    }
+}
@@ -0,0 +1,245 @@
+package t.me.p1azmer.discord.verify.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.HttpUrl;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the client against a local {@link HttpServer} standing in for SpigotMC.
+ */
+class SpigotHttpClientTest {
+    private static final ResponseReader<String> TEXT = body -> body.readUtf8();
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicReference<Handler> handler = new AtomicReference<>();
+    private HttpServer server;
+    private ExecutorService serverThreads;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                handler.get().handle(exchange, requests.incrementAndGet());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void readsSuccessfulAndNotFoundResponses() throws Exception {
+        SpigotHttpClient client = client(Duration.ofSeconds(5), 3, 5, Duration.ofSeconds(30));
+        handler.set((exchange, request) -> respond(exchange, request == 1 ? 200 : 404, "body " + request));
+
+        assertEquals("body 1", client.get("a", url(), TEXT));
+        assertEquals("body 2", client.get("b", url(), TEXT));
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreaker().getState());
+    }
+
+    @Test
+    void honoursRetryAfterOn429() throws Exception {
+        SpigotHttpClient client = client(Duration.ofSeconds(10), 3, 5, Duration.ofSeconds(30));
+        handler.set((exchange, request) -> {
+            if (request == 1) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                respond(exchange, 429, "slow down");
+            } else {
+                respond(exchange, 200, "ok");
+            }
+        });
+
+        long start = System.nanoTime();
+        assertEquals("ok", client.get("key", url(), TEXT));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(1000), "retried before Retry-After");
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void retriesServerErrorsUntilTheDeadline() {
+        Duration deadline = Duration.ofMillis(1500);
+        SpigotHttpClient client = client(deadline, 100, 5, Duration.ofSeconds(30));
+        handler.set((exchange, request) -> respond(exchange, 503, "down"));
+
+        long start = System.nanoTime();
+        assertThrows(SpigotUnavailableException.class, () -> client.get("key", url(), TEXT));
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed <= deadline.toNanos() + TimeUnit.MILLISECONDS.toNanos(500), "ran past the deadline: " + elapsed);
+        assertTrue(requests.get() > 1, "never retried");
+    }
+
+    @Test
+    void rejectedRequestsAreUnavailableNotEmpty() {
+        SpigotHttpClient client = client(Duration.ofSeconds(5), 3, 1, Duration.ofSeconds(30));
+        handler.set((exchange, request) -> respond(exchange, 403, "<html>Cloudflare</html>"));
+
+        assertThrows(SpigotUnavailableException.class, () -> client.get("key", url(), TEXT));
+        assertEquals(1, requests.get(), "a 403 must not be retried");
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreaker().getState());
+    }
+
+    @Test
+    void coalescesConcurrentRequestsWithTheSameKey() throws Exception {
+        SpigotHttpClient client = client(Duration.ofSeconds(10), 0, 5, Duration.ofSeconds(30));
+        CountDownLatch release = new CountDownLatch(1);
+        handler.set((exchange, request) -> {
+            release.await();
+            respond(exchange, 200, "shared " + request);
+        });
+
+        int callers = 8;
+        ExecutorService threads = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(threads.submit(() -> client.get("same", url(), TEXT)));
+            }
+            awaitCondition(() -> requests.get() == 1);
+            // give the other callers time to join the call in flight before it completes
+            Thread.sleep(200);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("shared 1", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, requests.get());
+            assertEquals(0, client.getInFlightCount());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void circuitBreakerOpensProbesAndCloses() throws Exception {
+        Duration openDuration = Duration.ofMillis(300);
+        SpigotHttpClient client = client(Duration.ofSeconds(5), 0, 2, openDuration);
+        CircuitBreaker breaker = client.getCircuitBreaker();
+        handler.set((exchange, request) -> respond(exchange, 500, "error"));
+
+        assertThrows(SpigotUnavailableException.class, () -> client.get("a", url(), TEXT));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertThrows(SpigotUnavailableException.class, () -> client.get("b", url(), TEXT));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // fails fast without reaching SpigotMC while open
+        assertThrows(SpigotUnavailableException.class, () -> client.get("c", url(), TEXT));
+        assertEquals(2, requests.get());
+
+        Thread.sleep(openDuration.toMillis() + 100);
+        CountDownLatch release = new CountDownLatch(1);
+        handler.set((exchange, request) -> {
+            release.await();
+            respond(exchange, 200, "recovered");
+        });
+        ExecutorService probe = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> result = probe.submit(() -> client.get("probe", url(), TEXT));
+            awaitCondition(() -> requests.get() == 3);
+            assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+            // only the probe gets through while half open
+            assertThrows(SpigotUnavailableException.class, () -> client.get("other", url(), TEXT));
+
+            release.countDown();
+            assertEquals("recovered", result.get(5, TimeUnit.SECONDS));
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        } finally {
+            probe.shutdownNow();
+        }
+    }
+
+    @Test
+    void interruptsDoNotCountAsFailures() throws Exception {
+        SpigotHttpClient client = client(Duration.ofSeconds(30), 3, 1, Duration.ofSeconds(30));
+        handler.set((exchange, request) -> {
+            exchange.getResponseHeaders().add("Retry-After", "10");
+            respond(exchange, 503, "down");
+        });
+
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread caller = new Thread(() -> {
+            try {
+                client.get("key", url(), TEXT);
+            } catch (Throwable throwable) {
+                thrown.set(throwable);
+            }
+        });
+        caller.start();
+        // interrupt while it waits out the Retry-After
+        awaitCondition(() -> requests.get() == 1 && caller.getState() == Thread.State.TIMED_WAITING);
+        caller.interrupt();
+        caller.join(5000);
+
+        assertInstanceOf(InterruptedException.class, thrown.get());
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreaker().getState());
+        assertTrue(client.getCircuitBreaker().allowRequest(), "the interrupted request kept its permit");
+    }
+
+    private @NotNull SpigotHttpClient client(@NotNull Duration deadline, int maxRetries, int failureThreshold, @NotNull Duration openDuration) {
+        return new SpigotHttpClient(new SpigotHttpClient.Settings(url().toString(), 60_000, 1000, deadline,
+                maxRetries, failureThreshold, openDuration, 64 * 1024));
+    }
+
+    private @NotNull HttpUrl url() {
+        return HttpUrl.get("http://127.0.0.1:" + server.getAddress().getPort() + "/api");
+    }
+
+    private static void respond(@NotNull HttpExchange exchange, int status, @NotNull String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private static void awaitCondition(@NotNull Condition condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.met()) {
+            if (System.nanoTime() > deadline) throw new AssertionError("condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(@NotNull HttpExchange exchange, int request) throws IOException, InterruptedException;
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        boolean met();
+    }
+}
@@ -0,0 +1,36 @@
+package t.me.p1azmer.discord.verify.models;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VerifiedAccountTest {
+    private static final VerifiedAccount ACCOUNT = new VerifiedAccount(1L, 123456789012345678L, 42, "discord.gg/123456/ab",
+            0L, 0L, "oldname");
+
+    @Test
+    void acceptsWhatWasCapturedAtVerification() {
+        assertTrue(ACCOUNT.isLinkedTo("discord.gg/123456/ab"));
+        assertTrue(ACCOUNT.isLinkedTo("OldName"));
+    }
+
+    @Test
+    void acceptsTheDiscordId() {
+        assertTrue(ACCOUNT.isLinkedTo("123456789012345678"));
+    }
+
+    @Test
+    void acceptsTheCurrentNames() {
+        assertFalse(ACCOUNT.isLinkedTo("newname"));
+        assertTrue(ACCOUNT.isLinkedTo("newname", "newname", null, null));
+        // display names may contain spaces, which the profile field has stripped
+        assertTrue(ACCOUNT.isLinkedTo("TheBuilder", "newname", "The Builder", null));
+        assertTrue(ACCOUNT.isLinkedTo("nick", "newname", null, "Nick"));
+    }
+
+    @Test
+    void rejectsSomeoneElse() {
+        assertFalse(ACCOUNT.isLinkedTo("someoneelse", "newname", "The Builder", "nick"));
+    }
+}
@@ -0,0 +1,72 @@
+package t.me.p1azmer.discord.verify.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VerificationPipelineTest {
+
+    @Test
+    void rejectsWhenRunningAndQueuedAreFull() throws Exception {
+        VerificationPipeline pipeline = new VerificationPipeline(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> running = pipeline.submit(() -> await(release), () -> { });
+        CompletableFuture<Void> queued = pipeline.submit(() -> { }, () -> { });
+
+        assertNull(pipeline.submit(() -> { }, () -> { }));
+        release.countDown();
+        assertNotNull(running);
+        running.get(5, TimeUnit.SECONDS);
+        assertNotNull(queued);
+        queued.get(5, TimeUnit.SECONDS);
+        pipeline.shutdown();
+    }
+
+    @Test
+    void answersTasksDroppedAtShutdown() throws Exception {
+        VerificationPipeline pipeline = new VerificationPipeline(1, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+        AtomicInteger dropped = new AtomicInteger();
+        CompletableFuture<Void> running = pipeline.submit(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }, dropped::incrementAndGet);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<?>[] queued = new CompletableFuture<?>[3];
+        for (int i = 0; i < queued.length; i++) {
+            queued[i] = pipeline.submit(ran::incrementAndGet, dropped::incrementAndGet);
+        }
+
+        assertEquals(3, pipeline.shutdownNow());
+        assertEquals(3, dropped.get(), "every queued task gets its answer");
+        assertEquals(0, ran.get());
+        for (CompletableFuture<?> future : queued) {
+            assertTrue(future.isCancelled());
+        }
+        // the running task is interrupted, not dropped
+        assertNotNull(running);
+        running.get(5, TimeUnit.SECONDS);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package t.me.p1azmer.discord.verify.store;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import t.me.p1azmer.discord.verify.models.PendingVerification;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileVerificationStoreTest {
+    private static final Duration TTL = Duration.ofMinutes(10);
+    // long enough that the background compactor never runs during a test
+    private static final Duration COMPACTION_INTERVAL = Duration.ofHours(1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysPutsRemovesAndAttempts() throws IOException {
+        Path file = directory.resolve("pending.log");
+        PendingVerification first = PendingVerification.create(1, "First", "code-1");
+        PendingVerification second = PendingVerification.create(2, "Second", "code-2");
+        PendingVerification third = PendingVerification.create(3, "Third", "code-3");
+
+        FileVerificationStore store = open(file);
+        store.put(first);
+        store.put(second);
+        store.put(third);
+        store.remove(1);
+        assertTrue(store.recordAttempt(second));
+        assertTrue(store.complete(third));
+        store.close();
+
+        FileVerificationStore reopened = open(file);
+        assertNull(reopened.get(1));
+        assertNull(reopened.get(3));
+        assertEquals(second.withAttempt(), reopened.get(2));
+        assertEquals(1, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    void latestPutOfAUserWins() throws IOException {
+        Path file = directory.resolve("pending.log");
+        FileVerificationStore store = open(file);
+        store.put(PendingVerification.create(1, "Name", "old-code"));
+        PendingVerification replacement = PendingVerification.create(1, "Name", "new-code");
+        store.put(replacement);
+        store.close();
+
+        FileVerificationStore reopened = open(file);
+        assertEquals(replacement, reopened.get(1));
+        assertFalse(reopened.isCodePending("old-code"));
+        reopened.close();
+    }
+
+    @Test
+    void dropsEntriesThatExpiredWhileStopped() throws IOException {
+        Path file = directory.resolve("pending.log");
+        long now = System.currentTimeMillis();
+        PendingVerification stale = new PendingVerification(1, "Stale", "code-1", now - TTL.toMillis() - 1000, 0);
+        PendingVerification fresh = new PendingVerification(2, "Fresh", "code-2", now, 0);
+
+        FileVerificationStore store = open(file);
+        store.put(stale);
+        store.put(fresh);
+        store.close();
+
+        FileVerificationStore reopened = open(file);
+        assertNull(reopened.get(1));
+        assertEquals(fresh, reopened.get(2));
+        assertEquals(1, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    void truncatesATornRecordAtTheEnd() throws IOException {
+        Path file = directory.resolve("pending.log");
+        PendingVerification first = PendingVerification.create(1, "First", "code-1");
+        PendingVerification second = PendingVerification.create(2, "Second", "code-2");
+
+        FileVerificationStore store = open(file);
+        store.put(first);
+        store.put(second);
+        store.close();
+        long validLength = Files.size(file);
+
+        // a put that was cut off after its op byte and part of the discord id
+        Files.write(file, new byte[]{1, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        FileVerificationStore reopened = open(file);
+        assertEquals(validLength, Files.size(file));
+        assertEquals(first, reopened.get(1));
+        assertEquals(second, reopened.get(2));
+
+        PendingVerification third = PendingVerification.create(3, "Third", "code-3");
+        reopened.put(third);
+        reopened.close();
+
+        FileVerificationStore again = open(file);
+        assertEquals(third, again.get(3));
+        assertEquals(3, again.size());
+        again.close();
+    }
+
+    @Test
+    void setsAsideAFileWithAnUnknownHeader() throws IOException {
+        Path file = directory.resolve("pending.log");
+        byte[] foreign = {'n', 'o', 't', ' ', 'a', ' ', 'l', 'o', 'g'};
+        Files.write(file, foreign);
+
+        FileVerificationStore store = open(file);
+        assertEquals(0, store.size());
+        assertTrue(Files.exists(directory.resolve("pending.log.unsupported")));
+        store.put(PendingVerification.create(1, "Name", "code-1"));
+        store.close();
+
+        FileVerificationStore reopened = open(file);
+        assertNotNull(reopened.get(1));
+        reopened.close();
+    }
+
+    @Test
+    void setsAsideALogOfAnotherVersion() throws IOException {
+        Path file = directory.resolve("pending.log");
+        open(file).close();
+        byte[] header = Files.readAllBytes(file);
+        header[Integer.BYTES]++;
+        Files.write(file, header);
+
+        FileVerificationStore store = open(file);
+        assertEquals(0, store.size());
+        assertTrue(Files.exists(directory.resolve("pending.log.unsupported")));
+        store.close();
+    }
+
+    @Test
+    void compactionKeepsOnlyLiveEntries() throws IOException {
+        Path file = directory.resolve("pending.log");
+        FileVerificationStore store = open(file);
+        for (int i = 0; i < 100; i++) {
+            store.put(PendingVerification.create(i, "User" + i, "code-" + i));
+        }
+        for (int i = 0; i < 90; i++) {
+            store.remove(i);
+        }
+        long before = Files.size(file);
+
+        store.compact();
+        assertTrue(Files.size(file) < before);
+        assertFalse(Files.exists(directory.resolve("pending.log.tmp")));
+
+        // writes after compaction go to the new log
+        PendingVerification late = PendingVerification.create(500, "Late", "code-500");
+        store.put(late);
+        store.remove(95);
+        store.close();
+
+        FileVerificationStore reopened = open(file);
+        assertEquals(10, reopened.size());
+        assertNull(reopened.get(95));
+        assertEquals(late, reopened.get(500));
+        for (int i = 90; i < 100; i++) {
+            if (i != 95) assertNotNull(reopened.get(i), "entry " + i);
+        }
+        reopened.close();
+    }
+
+    @Test
+    void failedCompactionLeavesTheStoreWritable() throws IOException {
+        Path file = directory.resolve("pending.log");
+        FileVerificationStore store = open(file);
+        PendingVerification first = PendingVerification.create(1, "First", "code-1");
+        store.put(first);
+
+        // a directory in the way of the temporary file makes the rewrite fail
+        Path temp = Files.createDirectory(directory.resolve("pending.log.tmp"));
+        Files.createFile(temp.resolve("blocker"));
+        assertThrows(IOException.class, store::compact);
+
+        PendingVerification second = PendingVerification.create(2, "Second", "code-2");
+        store.put(second);
+        store.close();
+
+        FileVerificationStore reopened = open(file);
+        assertEquals(first, reopened.get(1));
+        assertEquals(second, reopened.get(2));
+        reopened.close();
+    }
+
+    @Test
+    void failedMoveKeepsTheCurrentLogOpen() throws IOException {
+        Path file = directory.resolve("pending.log");
+        FileVerificationStore store = open(file);
+        store.put(PendingVerification.create(1, "First", "code-1"));
+
+        // a non-empty directory where the log was cannot be replaced, so the rename fails after the rewrite
+        Files.delete(file);
+        Files.createDirectory(file);
+        Files.createFile(file.resolve("blocker"));
+        assertThrows(IOException.class, store::compact);
+        assertFalse(Files.exists(directory.resolve("pending.log.tmp")));
+
+        store.put(PendingVerification.create(2, "Second", "code-2"));
+        store.remove(1);
+        assertEquals(1, store.size());
+        store.close();
+    }
+
+    private static @NotNull FileVerificationStore open(@NotNull Path file) throws IOException {
+        return new FileVerificationStore(file, TTL, COMPACTION_INTERVAL);
+    }
+}
@@ -0,0 +1,114 @@
+package t.me.p1azmer.discord.verify.throttle;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandThrottleTest {
+    private static final long USER = 42L;
+    private static final Duration WINDOW = Duration.ofSeconds(60);
+    private static final long WINDOW_NANOS = WINDOW.toNanos();
+
+    // an arbitrary start, like System.nanoTime()
+    private final AtomicLong now = new AtomicLong(123_456_789_000L);
+
+    @Test
+    void refusesOnceTheLimitIsUsedUp() {
+        CommandThrottle throttle = throttle(3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, throttle.tryAcquire(USER));
+        }
+        assertTrue(throttle.tryAcquire(USER) > 0);
+        // refused uses are not counted
+        assertTrue(throttle.tryAcquire(USER) > 0);
+        assertEquals(0, throttle.tryAcquire(USER + 1), "users are limited separately");
+    }
+
+    @Test
+    void retryAfterPointsAtTheFirstAllowedUse() {
+        CommandThrottle throttle = throttle(3);
+        for (int i = 0; i < 3; i++) throttle.tryAcquire(USER);
+
+        // 3 uses in this window: it has to become the previous window and slide a third of the way out
+        long retryAfter = throttle.tryAcquire(USER);
+        assertEquals(WINDOW_NANOS + WINDOW_NANOS / 3, retryAfter, TimeUnit.MILLISECONDS.toNanos(1));
+
+        advance(retryAfter - TimeUnit.MILLISECONDS.toNanos(10));
+        assertTrue(throttle.tryAcquire(USER) > 0);
+        advance(TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(0, throttle.tryAcquire(USER));
+    }
+
+    @Test
+    void previousWindowCountsByTheShareStillCovered() {
+        CommandThrottle throttle = throttle(10);
+        for (int i = 0; i < 10; i++) throttle.tryAcquire(USER);
+
+        // halfway through the next window the 10 earlier uses weigh 5, leaving room for 5 more
+        advance(WINDOW_NANOS + WINDOW_NANOS / 2);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, throttle.tryAcquire(USER), "use " + i);
+        }
+        long retryAfter = throttle.tryAcquire(USER);
+        // 10 * (1 - f) + 5 + 1 <= 10 from f = 0.6 on, a tenth of a window later
+        assertEquals(WINDOW_NANOS / 10, retryAfter, TimeUnit.MILLISECONDS.toNanos(1));
+
+        advance(retryAfter);
+        assertEquals(0, throttle.tryAcquire(USER));
+        assertTrue(throttle.tryAcquire(USER) > 0);
+    }
+
+    @Test
+    void forgetsUsesAfterTwoIdleWindows() {
+        CommandThrottle throttle = throttle(3);
+        for (int i = 0; i < 3; i++) throttle.tryAcquire(USER);
+
+        advance(2 * WINDOW_NANOS + 1);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, throttle.tryAcquire(USER), "use " + i);
+        }
+        assertTrue(throttle.tryAcquire(USER) > 0);
+    }
+
+    @Test
+    void countsUpToTheFullFieldWidth() {
+        int limit = 0xFFFF;
+        CommandThrottle throttle = throttle(limit);
+        for (int i = 0; i < limit; i++) {
+            assertEquals(0, throttle.tryAcquire(USER));
+        }
+        // a count that overflowed into the previous-window field would let this through
+        assertTrue(throttle.tryAcquire(USER) > 0);
+
+        // the full count carries over as the previous window, which at the start of the next one still fills the limit
+        advance(WINDOW_NANOS);
+        assertTrue(throttle.tryAcquire(USER) > 0);
+        // a percent later a percent of it has slid out
+        advance(WINDOW_NANOS / 100);
+        int allowed = 0;
+        while (throttle.tryAcquire(USER) == 0) allowed++;
+        assertEquals(limit / 100, allowed, 1);
+    }
+
+    @Test
+    void rejectsLimitsTheStateCannotHold() {
+        assertThrows(IllegalArgumentException.class, () -> throttle(0));
+        assertThrows(IllegalArgumentException.class, () -> throttle(0x10000));
+        assertThrows(IllegalArgumentException.class, () -> new CommandThrottle(1, Duration.ZERO, now::get));
+    }
+
+    private @NotNull CommandThrottle throttle(int limit) {
+        return new CommandThrottle(limit, WINDOW, now::get);
+    }
+
+    private void advance(long nanos) {
+        now.addAndGet(nanos);
+    }
+}
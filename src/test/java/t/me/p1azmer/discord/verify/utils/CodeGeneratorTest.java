@@ -0,0 +1,104 @@
+package t.me.p1azmer.discord.verify.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link CodeGenerator#next()} picks every character of the alphabet equally often, at every position.
+ * The critical values are the chi-square quantiles for a one in a million false failure, so a biased generator
+ * (modulo bias, a skipped character, a stuck position) fails while a fair one practically never does.
+ */
+class CodeGeneratorTest {
+    private static final int CODES = 100_000;
+    private static final String ALPHANUMERIC = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789";
+
+    @Test
+    void digitsAreUniform() {
+        CodeGenerator generator = new CodeGenerator(CodeGenerator.DEFAULT_LENGTH, CodeGenerator.DIGITS);
+        long[][] counts = count(generator);
+
+        // 10 digits: 9 degrees of freedom
+        assertBelow(chiSquare(total(counts)), 44.81, "digit frequencies");
+    }
+
+    @Test
+    void digitsAreUniformAtEveryPosition() {
+        CodeGenerator generator = new CodeGenerator(CodeGenerator.DEFAULT_LENGTH, CodeGenerator.DIGITS);
+        long[][] counts = count(generator);
+
+        // 6 independent positions of 9 degrees of freedom each
+        double statistic = 0;
+        for (long[] position : counts) statistic += chiSquare(position);
+        assertBelow(statistic, 118.45, "digit frequencies per position");
+    }
+
+    @Test
+    void customAlphabetIsUniform() {
+        CodeGenerator generator = new CodeGenerator(8, ALPHANUMERIC);
+        long[][] counts = count(generator);
+
+        // 32 characters: 31 degrees of freedom
+        assertBelow(chiSquare(total(counts)), 83.64, "alphanumeric frequencies");
+    }
+
+    @Test
+    void codesHaveTheConfiguredShape() {
+        CodeGenerator generator = new CodeGenerator(8, ALPHANUMERIC);
+        for (int i = 0; i < 1000; i++) {
+            String code = generator.next();
+            assertEquals(8, code.length());
+            assertTrue(code.chars().allMatch(c -> ALPHANUMERIC.indexOf(c) >= 0), code);
+        }
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new CodeGenerator(0, CodeGenerator.DIGITS));
+        assertThrows(IllegalArgumentException.class, () -> new CodeGenerator(6, "A"));
+        assertThrows(IllegalArgumentException.class, () -> new CodeGenerator(6, "AAB"));
+    }
+
+    /**
+     * @return occurrences of each alphabet character, by position
+     */
+    private static long[][] count(@NotNull CodeGenerator generator) {
+        String alphabet = generator.getAlphabet();
+        long[][] counts = new long[generator.getLength()][alphabet.length()];
+        for (int i = 0; i < CODES; i++) {
+            String code = generator.next();
+            for (int position = 0; position < code.length(); position++) {
+                counts[position][alphabet.indexOf(code.charAt(position))]++;
+            }
+        }
+        return counts;
+    }
+
+    private static long[] total(long[][] counts) {
+        long[] total = new long[counts[0].length];
+        for (long[] position : counts) {
+            for (int i = 0; i < position.length; i++) total[i] += position[i];
+        }
+        return total;
+    }
+
+    private static double chiSquare(long[] observed) {
+        long samples = 0;
+        for (long count : observed) samples += count;
+
+        double expected = samples / (double) observed.length;
+        double statistic = 0;
+        for (long count : observed) {
+            double difference = count - expected;
+            statistic += difference * difference / expected;
+        }
+        return statistic;
+    }
+
+    private static void assertBelow(double statistic, double critical, @NotNull String what) {
+        assertTrue(statistic < critical, () -> what + " are not uniform: chi-square " + statistic + " >= " + critical);
+    }
+}